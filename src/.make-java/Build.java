@@ -5,12 +5,32 @@ import java.util.List;
 
 /** Build program for this project. */
 class Build {
-  public static void main(String... args) {
-    var logger = Make.Logger.ofSystem(true).log(Level.INFO, "Build.java (args=%s)", List.of(args));
+  public static void main(String... args) throws Exception {
     var folder = Make.Folder.ofCurrentWorkingDirectory();
-    var project = Make.Project.Builder.of(logger, folder).setVersion("1-ea").build();
+    if (List.of(args).contains("--daemon")) {
+      new Make.Daemon(folder, logger -> project(logger, folder)).serve();
+      return;
+    }
+    if (List.of(args).contains("--watch")) {
+      var logger = Make.Logger.ofSystem(true);
+      new Make.Watcher(logger, folder, __ -> project(logger, folder)).watch();
+      return;
+    }
+    var code = Make.Daemon.connect(folder, List.of(args), true);
+    if (code.isPresent()) {
+      if (code.getAsInt() != 0) throw new Error("Daemon build failed: " + code.getAsInt());
+      return;
+    }
+    if (List.of(args).contains(Make.Daemon.STOP)) return;
+
+    var logger = Make.Logger.ofSystem(true).log(Level.INFO, "Build.java (args=%s)", List.of(args));
+    var project = project(logger, folder);
     var plan = Make.Tool.Plan.of(logger, folder, project);
 
     new Make(logger, folder, project, plan).run();
   }
+
+  static Make.Project project(Make.Logger logger, Make.Folder folder) {
+    return Make.Project.Builder.of(logger, folder).setVersion("1-ea").build();
+  }
 }
@@ -17,25 +17,114 @@
 
 // default package
 
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionStatementTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.StatementTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreeScanner;
+import com.sun.source.util.Trees;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.lang.System.Logger.Level;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.lang.module.ModuleDescriptor;
 import java.lang.module.ModuleDescriptor.Version;
+import java.math.BigInteger;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.spi.ToolProvider;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
 
 /** Modular Java Build Tool. */
 public class Make {
@@ -43,20 +132,42 @@ public class Make {
   /** Version string. */
   public static final String VERSION = "1-ea";
 
+  /** Worker JVMs shared by all runs in this JVM. */
+  static final Workers WORKERS = new Workers();
+
   private final Logger logger;
   private final Folder folder;
   private final Project project;
   private final Tool.Plan plan;
   private final Summary summary;
+  private final Trace trace;
+  private final Cache cache;
+  private final Compiler compiler;
+  private final Tool.Registry registry;
+  private final Admission admission;
+  private final String id = UUID.randomUUID().toString().substring(0, 8);
+  private final AtomicInteger outputs = new AtomicInteger();
+  private final Set<Thread> interruptibles = new HashSet<>();
 
   Make(Logger logger, Folder folder, Project project, Tool.Plan plan) {
+    this(logger, folder, project, plan, Tool.Registry.ofDefaults());
+  }
+
+  Make(Logger logger, Folder folder, Project project, Tool.Plan plan, Tool.Registry registry) {
     this.logger = logger;
     this.folder = folder;
     this.project = project;
     this.plan = plan;
     this.summary = new Summary();
+    this.trace = new Trace();
+    this.cache = new Cache(folder.out("cache"));
+    this.compiler = new Compiler();
+    this.registry = registry;
+    var budget = Long.getLong("memory-budget", 0);
+    this.admission = new Admission(folder.out("memory.history"), budget);
     log(Level.INFO, "%s", this);
     log(Level.DEBUG, "Java %s", Runtime.version());
+    log(Level.DEBUG, "Id %s", id());
     log(Level.DEBUG, "Folder %s", folder());
     log(Level.DEBUG, "Project %s", project());
     log(Level.DEBUG, "Plan %s", plan());
@@ -78,17 +189,25 @@ public class Make {
     return plan;
   }
 
-  private synchronized String log(Level level, String format, Object... args) {
-    var message = String.format(format, args);
-    var entry = Logger.Entry.of(level, message);
+  public Tool.Registry registry() {
+    return registry;
+  }
+
+  /** Return the random identifier of this instance, prefixing the names of its log files. */
+  String id() {
+    return id;
+  }
+
+  private Logger.Entry log(Level level, String format, Object... args) {
+    var entry = Logger.Entry.of(level, format, args);
     summary.entries.add(entry);
-    logger().log(entry);
-    return message;
+    if (logger().isLoggable(level)) logger().log(entry);
+    return entry;
   }
 
   public Make run() {
     log(Level.INFO, "Make %s %s", project().name(), project().version());
-    if (logger().verbose()) Tool.print(plan());
+    if (logger().verbose()) Tool.print(plan(), logger());
     if (Boolean.getBoolean("dry-run")) return this;
     if (project().realms().stream().mapToLong(realm -> realm.modules().size()).sum() == 0) {
       log(Level.WARNING, "No modules defined in project!");
@@ -97,48 +216,256 @@ public class Make {
     return run(plan());
   }
 
+  /**
+   * Run all calls of the given call tree as soon as their predecessors in the graph are done.
+   *
+   * <p>Calls run on a fork-join pool of this run, its parallelism is configurable via system
+   * property {@code parallelism} and defaults to the number of available processors. Nested work
+   * of calls, like compressing jar entries, is forked into the same pool. With {@code
+   * virtual-threads} set, built-in tools run on virtual threads if the runtime supports them.
+   *
+   * <p>The first failing call cancels the run: calls not yet started are skipped and running
+   * built-in tools are interrupted, while running tool providers complete. All failures are thrown
+   * together, the first one carrying the others as suppressed exceptions.
+   *
+   * <p>With system property {@code memory-budget} set, calls are admitted to run as long as their
+   * estimated heap usage fits into the budget, see {@link Admission}.
+   */
   public Make run(Tool.Call call) {
-    if (call instanceof Tool.Plan) {
-      var plan = ((Tool.Plan) call);
-      var calls = plan.calls();
-      if (calls.isEmpty()) return this;
-      // log(Level.DEBUG, "┌─ %s", call);
-      var stream = plan.parallel() ? calls.stream().parallel() : calls.stream();
-      var start = Instant.now();
-      stream.forEach(this::run);
-      var duration = Duration.between(start, Instant.now()).toMillis();
-      log(Level.DEBUG, "%d ms for running: %s", duration, plan.name());
-      return this;
+    var graph = Tool.Graph.of(call);
+    var nodes = graph.nodes();
+    if (nodes.isEmpty()) return this;
+    var parallelism = Integer.getInteger("parallelism", Runtime.getRuntime().availableProcessors());
+    if (parallelism < 1) {
+      var message = "System property parallelism must be greater than zero, but is: ";
+      throw new IllegalArgumentException(message + parallelism);
+    }
+    var start = Instant.now();
+    var event = new Events.Run();
+    event.begin();
+    var factory = ForkJoinPool.defaultForkJoinWorkerThreadFactory;
+    var pool = new ForkJoinPool(parallelism, factory, null, true);
+    var virtual = Boolean.getBoolean("virtual-threads") ? newVirtualThreadExecutor() : null;
+    var context = new Context(pool);
+    admission.load();
+    try {
+      var futures = new ArrayList<CompletableFuture<Void>>();
+      for (var node : nodes) {
+        var predecessors =
+            node.predecessors().stream()
+                .map(predecessor -> futures.get(predecessor.index()))
+                .toArray(CompletableFuture<?>[]::new);
+        var future = CompletableFuture.allOf(predecessors);
+        var builtIn = virtual != null && registry.lookup(node.call().name()).isBuiltIn();
+        var executor = builtIn ? virtual : pool;
+        futures.add(future.thenRunAsync(() -> run(node, context), executor));
+      }
+      CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new)).join();
+    } catch (CompletionException e) {
+      var cause = e.getCause();
+      if (cause instanceof Error) throw (Error) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      throw e;
+    } finally {
+      pool.shutdown();
+      if (virtual != null) virtual.shutdown();
+      compiler.close();
+      admission.store();
+      event.call = call.name();
+      event.calls = nodes.size();
+      event.commit();
+    }
+    var duration = Duration.between(start, Instant.now()).toMillis();
+    log(Level.DEBUG, "%d ms for running %d calls of: %s", duration, nodes.size(), call.name());
+    if (context.failures.isEmpty()) return this;
+    var iterator = context.failures.iterator();
+    var failure = iterator.next();
+    while (iterator.hasNext()) failure.addSuppressed(iterator.next());
+    if (failure instanceof Error) throw (Error) failure;
+    if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+    throw new RuntimeException(failure);
+  }
+
+  /** Pool and failures of a single run, shared by all of its calls. */
+  private static final class Context {
+    private final ForkJoinPool pool;
+    private final Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+    Context(ForkJoinPool pool) {
+      this.pool = pool;
     }
-    runTool(call);
-    return this;
   }
 
-  private void runTool(Tool.Call call) {
+  /** Run the call of the given node as soon as it is admitted and record it in the trace. */
+  private void run(Tool.Graph.Node node, Context context) {
+    var estimate = external(node.call()) ? 0 : admission.estimate(node.call());
+    try {
+      admission.acquire(estimate);
+    } catch (InterruptedException e) {
+      trace.record(node, call -> "cancelled");
+      return;
+    }
+    try {
+      trace.record(node, call -> runTool(call, context));
+    } finally {
+      admission.release(estimate);
+    }
+  }
+
+  /**
+   * Run the given call unless the run was cancelled by a failure, collect its failure.
+   *
+   * <p>Return {@code "skipped"}, {@code "restored"}, {@code "done"}, {@code "cancelled"}, or
+   * {@code "failed"}.
+   */
+  private String runTool(Tool.Call call, Context context) {
+    if (!context.failures.isEmpty()) return "cancelled";
+    var event = new Events.ToolCall();
+    event.begin();
+    try {
+      var heap = admission.heap();
+      event.outcome = runTool(call, context, event);
+      if (event.outcome.equals("done") && !external(call)) admission.record(call, heap);
+      return event.outcome;
+    } catch (CancellationException e) {
+      return "cancelled";
+    } catch (RuntimeException | Error e) {
+      context.failures.add(e);
+      synchronized (interruptibles) {
+        interruptibles.forEach(Thread::interrupt);
+      }
+      return "failed";
+    } finally {
+      event.tool = call.name();
+      event.arguments = call.args().size();
+      event.commit();
+    }
+  }
+
+  /** Return {@code true} if the given call runs in a worker JVM and not on the heap of this one. */
+  private boolean external(Tool.Call call) {
+    return WORKERS.accepts(call) && registry.lookup(call.name()).provider().isPresent();
+  }
+
+  private String runTool(Tool.Call call, Context context, Events.ToolCall event) {
     if (call instanceof Tool.Plan) throw new IllegalArgumentException("No plan!");
     log(Level.DEBUG, "· %s", call);
-    if (Boolean.getBoolean("dry-run")) return;
+    if (Boolean.getBoolean("dry-run")) return "skipped";
+
+    var registered = registry.lookup(call.name());
+    var tool = registered.provider();
+    if (tool.isEmpty() && !registered.isBuiltIn()) {
+      var message = log(Level.ERROR, "Tool not found: %s", call.name()).message();
+      throw new Error(message);
+    }
+    var lookup = new Events.CacheLookup();
+    lookup.begin();
+    var key = tool.isPresent() ? cache.key(call, tool.get()) : cache.key(call);
+    if (key.isPresent()) { // call is cacheable
+      lookup.hit = cache.restore(call, key.get());
+      lookup.tool = call.name();
+      lookup.key = key.get();
+      lookup.commit();
+      if (lookup.hit) return "restored";
+    }
 
-    var tool = ToolProvider.findFirst(call.name());
     if (tool.isPresent()) {
-      var out = new StringWriter();
-      var err = new StringWriter();
-      var array = call.args().toArray(String[]::new);
-      var code = tool.get().run(new PrintWriter(out), new PrintWriter(err), array);
-      out.toString().lines().forEach(line -> log(Level.TRACE, "  %s", line));
-      err.toString().lines().forEach(line -> log(Level.WARNING, "  %s", line));
+      var file = id() + "-" + outputs.incrementAndGet() + "-" + call.name();
+      var out = new LineWriter(Level.TRACE, folder().out("logs", file + "-out.log"));
+      var err = new LineWriter(Level.WARNING, folder().out("logs", file + "-err.log"));
+      int code;
+      try (out; err) {
+        code = run(tool.get(), call, new PrintWriter(out, true), new PrintWriter(err, true));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      event.code = code;
+      event.output = out.count + err.count;
       if (code != 0) {
-        var message = log(Level.ERROR, "%s run failed: %d", call.name(), code);
+        var message = log(Level.ERROR, "%s run failed: %d", call.name(), code).message();
         throw new Error(message, new RuntimeException(err.toString()));
       }
-      return;
+    } else {
+      try {
+        block(context, () -> registered.tool().orElseThrow().run(this, call.args(), context.pool));
+      } catch (InterruptedException | ClosedByInterruptException e) {
+        throw new CancellationException(call.name() + " cancelled");
+      } catch (Exception e) {
+        var entry = log(Level.ERROR, "%s run failed: %s -> ", call.name(), e.getMessage());
+        var message = entry.message();
+        event.code = 1;
+        throw new Error(message, e);
+      }
+    }
+    key.ifPresent(string -> cache.store(call, string));
+    return "done";
+  }
+
+  /**
+   * Run the blocking action of an I/O-bound built-in tool.
+   *
+   * <p>Running on a worker of a fork-join pool, the pool may activate a spare worker while the
+   * action blocks. CPU-bound tool providers run directly on the workers, keeping the number of
+   * busy threads at the configured parallelism. A cancelled run interrupts the action, an action
+   * of a run cancelled before the action was registered as interruptible isn't started at all.
+   */
+  private void block(Context context, Callable<?> action) throws Exception {
+    var blocker =
+        new ForkJoinPool.ManagedBlocker() {
+          private Exception exception;
+          private boolean done;
+
+          @Override
+          public boolean block() {
+            try {
+              action.call();
+            } catch (Exception e) {
+              exception = e;
+            }
+            done = true;
+            return true;
+          }
+
+          @Override
+          public boolean isReleasable() {
+            return done;
+          }
+        };
+    var thread = Thread.currentThread();
+    synchronized (interruptibles) {
+      interruptibles.add(thread);
+    }
+    try {
+      if (!context.failures.isEmpty()) throw new InterruptedException("Run cancelled");
+      ForkJoinPool.managedBlock(blocker);
+    } finally {
+      synchronized (interruptibles) {
+        interruptibles.remove(thread);
+        Thread.interrupted(); // clear a late interrupt, the thread will run other calls
+      }
+    }
+    if (blocker.exception != null) throw blocker.exception;
+  }
+
+  /** Return a new virtual-thread-per-task executor, or {@code null} if not supported. */
+  private ExecutorService newVirtualThreadExecutor() {
+    try {
+      var method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      log(Level.DEBUG, "Virtual threads not available: %s", e);
+      return null;
     }
+  }
 
+  private int run(ToolProvider tool, Tool.Call call, PrintWriter out, PrintWriter err) {
+    if (WORKERS.accepts(call)) return WORKERS.run(call, out, err);
+    if (!compiler.accepts(call)) return tool.run(out, err, call.args().toArray(String[]::new));
     try {
-      Tool.Default.valueOf(call.name()).run(this, call.args());
+      return compiler.run(call.args(), err);
     } catch (Exception e) {
-      var message = log(Level.ERROR, "%s run failed: %s -> ", call.name(), e.getMessage());
-      throw new Error(message, e);
+      e.printStackTrace(err);
+      return 1;
     }
   }
 
@@ -152,12 +479,18 @@ public class Make {
 
     /** Log the formatted message at the specified level. */
     default Logger log(Level level, String format, Object... args) {
-      return log(Entry.of(level, String.format(format, args)));
+      if (!isLoggable(level)) return this;
+      return log(Entry.of(level, format, args));
     }
 
     /** Log the given entry. */
     Logger log(Entry entry);
 
+    /** Return {@code true} if entries of the specified level are not discarded by this logger. */
+    default boolean isLoggable(Level level) {
+      return true;
+    }
+
     default boolean verbose() {
       return false;
     }
@@ -179,9 +512,15 @@ public class Make {
       }
 
       static Entry of(Level level, String message) {
+        return of(level, "%s", message);
+      }
+
+      /** Create an entry that formats its message on first access. */
+      static Entry of(Level level, String format, Object... args) {
         var thread = Thread.currentThread().getId();
         var instant = Instant.now();
         return new Entry() {
+          private volatile String message;
 
           @Override
           public long thread() {
@@ -200,7 +539,9 @@ public class Make {
 
           @Override
           public String message() {
-            return message;
+            var string = message;
+            if (string == null) message = string = String.format(format, args);
+            return string;
           }
         };
       }
@@ -219,12 +560,17 @@ public class Make {
         @Override
         public Logger log(Entry entry) {
           var level = entry.level();
-          if (level.compareTo(Level.INFO) < 0 && !verbose) return this;
+          if (!isLoggable(level)) return this;
           var stream = level.compareTo(Level.WARNING) < 0 ? System.out : System.err;
           stream.println(verbose ? entry.toString(start) : entry.message());
           return this;
         }
 
+        @Override
+        public boolean isLoggable(Level level) {
+          return verbose || level.compareTo(Level.INFO) >= 0;
+        }
+
         @Override
         public boolean verbose() {
           return verbose;
@@ -234,252 +580,2550 @@ public class Make {
     }
   }
 
-  /** Build summary. */
-  private class Summary {
+  /**
+   * Compile backend using the compiler API with standard file managers shared between calls.
+   *
+   * <p>A file manager keeps the runtime image and all archives on the module path open. As javac
+   * rejects setting a module source path pattern twice, file managers are pooled per pattern. The
+   * module path and the output directory are set on the file manager for each call.
+   */
+  private static class Compiler {
+
+    private final JavaCompiler javac = javax.tools.ToolProvider.getSystemJavaCompiler();
+    private final Map<String, Queue<StandardJavaFileManager>> managers = new ConcurrentHashMap<>();
+
+    /** Return {@code true} if the given call compiles sources into declared output paths. */
+    boolean accepts(Tool.Call call) {
+      if (javac == null || Boolean.getBoolean("no-shared-file-manager")) return false;
+      return call.name().equals("javac") && !call.outputs().isEmpty();
+    }
 
-    List<Logger.Entry> entries = new ArrayList<>();
+    /** Compile using a file manager of the pool matching the module source path. */
+    int run(List<String> args, PrintWriter err) throws Exception {
+      var options = new ArrayList<String>();
+      var files = new ArrayList<Path>();
+      var moduleSourcePath = "";
+      var modulePath = new ArrayList<Path>();
+      var destination = Optional.<Path>empty();
+      for (var iterator = args.iterator(); iterator.hasNext(); ) {
+        var option = iterator.next();
+        switch (option) {
+          case "--module-source-path":
+            moduleSourcePath = iterator.next();
+            break;
+          case "--module-path":
+          case "-p":
+            var paths = iterator.next().split(File.pathSeparator);
+            for (var path : paths) modulePath.add(Path.of(path));
+            break;
+          case "-d":
+            destination = Optional.of(Files.createDirectories(Path.of(iterator.next())));
+            break;
+          default:
+            if (option.endsWith(".java")) files.add(Path.of(option));
+            else options.add(option);
+        }
+      }
+      var pool = managers.computeIfAbsent(moduleSourcePath, __ -> new ConcurrentLinkedQueue<>());
+      var manager = pool.poll();
+      if (manager == null) manager = manager(moduleSourcePath);
+      try {
+        manager.setLocationFromPaths(StandardLocation.MODULE_PATH, modulePath);
+        if (destination.isPresent()) {
+          manager.setLocationFromPaths(StandardLocation.CLASS_OUTPUT, List.of(destination.get()));
+        } else {
+          manager.setLocation(StandardLocation.CLASS_OUTPUT, null);
+        }
+        var units = files.isEmpty() ? null : manager.getJavaFileObjectsFromPaths(files);
+        return javac.getTask(err, manager, null, options, null, units).call() ? 0 : 1;
+      } finally {
+        pool.add(manager);
+      }
+    }
 
-    void write(Path file) throws Exception {
-      var lines = new ArrayList<String>();
-      lines.add("# Project Build Summary");
-      lines.add("## Plan");
-      Tool.print(plan(), "", "  ", (indent, call) -> lines.add(indent + " - " + call.toMarkDown()));
-      lines.add("## Log");
-      lines.add("```log");
-      entries.forEach(entry -> lines.add(" - " + entry.toString(Instant.EPOCH)));
-      lines.add("```");
-      Files.write(file, lines);
+    private StandardJavaFileManager manager(String moduleSourcePath) {
+      var manager = javac.getStandardFileManager(null, null, null);
+      if (moduleSourcePath.isEmpty()) return manager;
+      manager.handleOption("--module-source-path", List.of(moduleSourcePath).iterator());
+      return manager;
+    }
+
+    /** Close and forget all file managers. */
+    void close() {
+      for (var pool : managers.values()) {
+        for (var manager = pool.poll(); manager != null; manager = pool.poll()) {
+          try {
+            manager.close();
+          } catch (Exception e) {
+            // ignore
+          }
+        }
+      }
+      managers.clear();
     }
   }
 
-  /** Well-known directory and file locations. */
-  public /*record*/ static final class Folder {
+  /**
+   * Memory-aware admission of calls to run.
+   *
+   * <p>The heap usage of a call is sampled by reading the peak usage of all heap memory pools after
+   * the call, minus the heap used when it started. Peaks are reset whenever no call is running, so
+   * concurrently running calls are charged for each other's heap usage, and the peaks of separate
+   * pools are summed: the figure over-estimates rather than under-estimates. The sampled bytes are
+   * recorded per call in a history file, each call is identified by its tool name and its outputs.
+   * In later runs, the recorded bytes are the estimated heap usage of that call. With a budget in
+   * bytes set via system property {@code memory-budget}, a call waits until the estimates of all
+   * running calls and its own fit into the budget. A call is always admitted when no other call is
+   * running, and unknown calls are estimated to use no memory at all. Calls running in a worker
+   * JVM don't use this heap, they are neither sampled nor charged against the budget.
+   */
+  class Admission {
+
+    private final Path file;
+    private final long budget;
+    private final Map<String, Long> history = new ConcurrentHashMap<>();
+    private final List<MemoryPoolMXBean> pools = heapMemoryPools();
+    private long reserved;
+    private int running;
+
+    Admission(Path file, long budget) {
+      this.file = file;
+      this.budget = budget;
+    }
 
-    public static Folder ofCurrentWorkingDirectory() {
-      return of(Path.of(""));
+    /** Return the estimated heap usage of the given call, {@code 0} if unknown. */
+    long estimate(Tool.Call call) {
+      return history.getOrDefault(key(call), 0L);
     }
 
-    public static Folder of(Path base) {
-      return new Folder(base, base.resolve("src"), base.resolve("lib"), base.resolve(".make-java"));
+    /** Wait until a call of the given estimate fits into the budget and reserve its estimate. */
+    void acquire(long estimate) throws InterruptedException {
+      synchronized (this) {
+        if (fits(estimate)) {
+          reserve(estimate);
+          return;
+        }
+      }
+      var blocker =
+          new ForkJoinPool.ManagedBlocker() {
+            private boolean admitted;
+
+            @Override
+            public boolean block() throws InterruptedException {
+              synchronized (Admission.this) {
+                while (!fits(estimate)) Admission.this.wait();
+                reserve(estimate);
+              }
+              admitted = true;
+              return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+              return admitted;
+            }
+          };
+      ForkJoinPool.managedBlock(blocker);
     }
 
-    private static Path resolve(Path path, String... more) {
-      if (more.length == 0) return path;
-      return path.resolve(String.join("/", more)).normalize();
+    private boolean fits(long estimate) {
+      return budget <= 0 || running == 0 || reserved + estimate <= budget;
     }
 
-    private final Path base;
-    private final Path src;
-    private final Path lib;
-    private final Path out;
+    private void reserve(long estimate) {
+      running++;
+      reserved += estimate;
+    }
 
-    public Folder(Path base, Path src, Path lib, Path out) {
-      this.base = base;
-      this.src = src;
-      this.lib = lib;
-      this.out = out;
+    /** Release the estimate of a finished call, letting waiting calls be admitted. */
+    synchronized void release(long estimate) {
+      running--;
+      reserved -= estimate;
+      if (running == 0) pools.forEach(MemoryPoolMXBean::resetPeakUsage);
+      notifyAll();
     }
 
-    public Path base() {
-      return base;
+    /** Return the sum of all estimates reserved by running calls. */
+    synchronized long reserved() {
+      return reserved;
     }
 
-    public Path base(String... more) {
-      return resolve(base, more);
+    /** Return the number of bytes currently used by the heap. */
+    long heap() {
+      return pools.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
     }
 
-    public Path src() {
-      return src;
+    /** Record the peak heap usage since the start of the given call as its estimate. */
+    void record(Tool.Call call, long heap) {
+      var peak = pools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+      history.put(key(call), Math.max(0, peak - heap));
     }
 
-    public Path src(String... more) {
-      return resolve(src, more);
+    private List<MemoryPoolMXBean> heapMemoryPools() {
+      var pools = new ArrayList<MemoryPoolMXBean>();
+      for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.isValid() && pool.getType() == MemoryType.HEAP) pools.add(pool);
+      }
+      return List.copyOf(pools);
     }
 
-    public Path lib() {
-      return lib;
+    private String key(Tool.Call call) {
+      var outputs = new TreeSet<>(call.outputs());
+      return call.name() + " " + (outputs.isEmpty() ? call.args() : outputs);
     }
 
-    public Path out() {
-      return out;
+    void load() {
+      synchronized (this) {
+        if (running == 0) pools.forEach(MemoryPoolMXBean::resetPeakUsage);
+      }
+      if (Files.notExists(file)) return;
+      try {
+        for (var line : Files.readAllLines(file)) {
+          var space = line.indexOf(' ');
+          history.put(line.substring(space + 1), Long.parseLong(line.substring(0, space)));
+        }
+      } catch (Exception e) {
+        log(Level.WARNING, "Reading memory history failed: %s", e);
+      }
     }
 
-    public Path out(String... more) {
-      return resolve(out, more);
+    void store() {
+      if (history.isEmpty()) return;
+      var lines = new ArrayList<String>();
+      new TreeMap<>(history).forEach((key, bytes) -> lines.add(bytes + " " + key));
+      try {
+        Files.createDirectories(file.getParent());
+        Files.write(file, lines);
+      } catch (Exception e) {
+        log(Level.WARNING, "Writing memory history failed: %s", e);
+      }
     }
   }
 
-  /** Tool API with tool call, tool plan, and planner support. */
-  public interface Tool<R> {
+  /**
+   * Pool of long-lived worker JVMs running tool providers outside of this JVM.
+   *
+   * <p>Workers are used when system property {@code workers} is set to the number of idle workers
+   * to keep warm between calls. A worker whose committed heap exceeds {@code worker-memory-limit}
+   * bytes after a call is stopped and replaced by a new one on demand. Options of worker JVMs, like
+   * heap settings, are read from system property {@code worker-jvm-options} and separated by white
+   * space. Without a class path to launch {@link Worker} from, like when this program runs in
+   * jshell, tools run in this JVM.
+   */
+  static final class Workers {
+
+    private final Queue<Connection> idle = new ConcurrentLinkedQueue<>();
+    private final Optional<Path> classPath = classPath();
+    private final AtomicInteger started = new AtomicInteger();
+
+    /** Return the number of worker JVMs started so far. */
+    int started() {
+      return started.get();
+    }
 
-    /** Run this tool. */
-    R run(Make make, List<String> arguments) throws Exception;
+    /** Stop all idle workers. */
+    void stop() {
+      for (var connection = idle.poll(); connection != null; connection = idle.poll()) {
+        connection.close();
+      }
+    }
 
-    /** Recursively print the given tool call to {@link System#out} */
-    static void print(Call root) {
-      print(root, "", "\t", (indent, call) -> System.out.printf("%s%s%n", indent, call));
+    /** Return {@code true} if the given call should be run by a worker. */
+    boolean accepts(Tool.Call call) {
+      return Integer.getInteger("workers", 0) > 0 && classPath.isPresent();
     }
 
-    static void print(Call call, String indent, String inc, BiConsumer<String, Call> consumer) {
-      consumer.accept(indent, call);
-      if (call instanceof Tool.Plan) {
-        var plan = ((Tool.Plan) call);
-        for (var child : plan.calls()) print(child, indent + inc, inc, consumer);
+    /** Run the given call in an idle or a new worker, return the exit code of the tool. */
+    int run(Tool.Call call, PrintWriter out, PrintWriter err) {
+      var connection = idle.poll();
+      try {
+        if (connection == null || !connection.process.isAlive()) connection = new Connection();
+        connection.writer.println(Worker.escape(call.name()));
+        connection.writer.println(call.args().size());
+        for (var argument : call.args()) connection.writer.println(Worker.escape(argument));
+        connection.writer.flush();
+        for (var line = connection.reader.readLine(); line != null; ) {
+          if (line.startsWith("O ")) out.println(line.substring(2));
+          else if (line.startsWith("E ")) err.println(line.substring(2));
+          else if (line.startsWith("X ")) {
+            var split = line.split(" ");
+            var limit = Long.getLong("worker-memory-limit", 1L << 30);
+            var keep = Long.parseLong(split[2]) <= limit;
+            if (keep && idle.size() < Integer.getInteger("workers", 0)) idle.add(connection);
+            else connection.close();
+            return Integer.parseInt(split[1]);
+          }
+          line = connection.reader.readLine();
+        }
+        err.println("Worker exited unexpectedly: " + connection.process.waitFor());
+      } catch (Exception e) {
+        e.printStackTrace(err);
       }
+      if (connection != null) connection.close();
+      return 1;
     }
 
-    /** Built-in tool implementations. */
-    enum Default implements Tool<Make> {
-      /** @see Files#createDirectories(Path, java.nio.file.attribute.FileAttribute[]) */
-      CREATE_DIRECTORIES {
-        @Override
-        public Make run(Make make, List<String> arguments) throws Exception {
-          Files.createDirectories(Path.of(arguments.get(0)));
-          return make;
+    private static Optional<Path> classPath() {
+      try {
+        var source = Make.class.getProtectionDomain().getCodeSource();
+        if (source == null) return Optional.empty();
+        var path = Path.of(source.getLocation().toURI());
+        if (Files.isDirectory(path) && Files.notExists(path.resolve("Make$Worker.class"))) {
+          return Optional.empty();
         }
-      },
-      /** Writes all log messages to the file specified by the first argument. */
-      WRITE_SUMMARY {
-        @Override
-        public Make run(Make make, List<String> arguments) throws Exception {
-          make.summary.write(Path.of(arguments.get(0)));
-          return make;
+        return Optional.of(path);
+      } catch (Exception e) {
+        return Optional.empty();
+      }
+    }
+
+    /** Standard streams of a running worker. */
+    private final class Connection {
+
+      private final Process process;
+      private final PrintWriter writer;
+      private final BufferedReader reader;
+
+      Connection() throws IOException {
+        var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        var builder = new ProcessBuilder(java);
+        var options = System.getProperty("worker-jvm-options", "").strip();
+        if (!options.isEmpty()) builder.command().addAll(List.of(options.split("\\s+")));
+        builder.command().addAll(List.of("-cp", classPath.orElseThrow().toString()));
+        builder.command().add(Worker.class.getName());
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        this.process = builder.start();
+        var output = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+        this.writer = new PrintWriter(output);
+        var input = new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8);
+        this.reader = new BufferedReader(input);
+        started.incrementAndGet();
+      }
+
+      void close() {
+        writer.close(); // worker exits at the end of its input
+        process.destroy();
+      }
+    }
+  }
+
+  /**
+   * Worker running tool calls sent by a {@link Make} process via standard input.
+   *
+   * <p>Each request consists of a tool name, the number of arguments, and one argument per line.
+   * Backslashes, line feeds, and carriage returns in names and arguments are escaped with a
+   * backslash, keeping each of them on a single line. Lines printed by the tool are answered
+   * prefixed with {@code O} or {@code E}, the final {@code X <code> <heap>} line reports the exit
+   * code and the committed heap in bytes.
+   */
+  public static final class Worker {
+
+    public static void main(String... args) throws Exception {
+      var reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+      var output = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+      var protocol = new PrintWriter(output);
+      System.setOut(System.err); // keep tools printing directly from corrupting the protocol
+      var tools = new HashMap<String, Optional<ToolProvider>>();
+      for (var line = reader.readLine(); line != null; line = reader.readLine()) {
+        var name = unescape(line);
+        var arguments = new String[Integer.parseInt(reader.readLine())];
+        for (int i = 0; i < arguments.length; i++) arguments[i] = unescape(reader.readLine());
+        var tool = tools.computeIfAbsent(name, ToolProvider::findFirst);
+        var out = new Channel("O ", protocol);
+        var err = new Channel("E ", protocol);
+        int code;
+        try (var o = new PrintWriter(out); var e = new PrintWriter(err)) {
+          if (tool.isEmpty()) e.println("Tool not found: " + name);
+          code = tool.isEmpty() ? 1 : tool.get().run(o, e, arguments);
+        } catch (RuntimeException | Error throwable) {
+          err.write(throwable + "\n");
+          code = 1;
         }
-      };
+        synchronized (protocol) {
+          protocol.println("X " + code + " " + Runtime.getRuntime().totalMemory());
+          protocol.flush();
+        }
+      }
+    }
 
-      Call args(Object... args) {
-        return Call.newCall(name(), args).build();
+    /** Escape the given string to fit on a single protocol line. */
+    static String escape(String string) {
+      return string.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    /** Restore the string of the given escaped protocol line. */
+    static String unescape(String line) {
+      var builder = new StringBuilder(line.length());
+      for (int i = 0; i < line.length(); i++) {
+        var c = line.charAt(i);
+        if (c != '\\' || i + 1 == line.length()) {
+          builder.append(c);
+          continue;
+        }
+        var next = line.charAt(++i);
+        builder.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
       }
+      return builder.toString();
     }
 
-    /** A tool call is composed of a name and the arguments. */
-    interface Call {
+    /** Writer sending each line as a protocol line starting with the given prefix. */
+    private static final class Channel extends Writer {
 
-      String name();
+      private final String prefix;
+      private final PrintWriter protocol;
+      private final StringBuilder line = new StringBuilder();
 
-      List<String> args();
+      Channel(String prefix, PrintWriter protocol) {
+        this.prefix = prefix;
+        this.protocol = protocol;
+      }
 
-      default String toMarkDown() {
-        return "`" + toString() + "`";
+      @Override
+      public void write(char[] buffer, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+          var c = buffer[i];
+          if (c == '\n') send();
+          else if (c != '\r') line.append(c);
+        }
       }
 
-      static Builder newCall(String name, Object... initials) {
-        return new Builder(name, initials);
+      private void send() {
+        synchronized (protocol) {
+          protocol.println(prefix + line);
+        }
+        line.setLength(0);
+      }
+
+      @Override
+      public void flush() {}
+
+      @Override
+      public void close() {
+        if (line.length() > 0) send();
+      }
+    }
+  }
+
+  /** Content-addressed action cache storing the outputs of tool calls. */
+  private class Cache {
+
+    /** Version of the outputs of default tools, increment it whenever they change. */
+    private static final int FORMAT = 1;
+
+    private final Path directory;
+    private final Map<String, String> versions = new ConcurrentHashMap<>();
+
+    Cache(Path directory) {
+      this.directory = directory;
+    }
+
+    /** Return the key of the given call, an empty optional if the call is not cacheable. */
+    Optional<String> key(Tool.Call call, ToolProvider tool) {
+      return key(call, () -> versions.computeIfAbsent(tool.name(), __ -> version(tool)));
+    }
+
+    /** Return the key of the given call of a default tool implemented by this program. */
+    Optional<String> key(Tool.Call call) {
+      return key(call, () -> Make.this + " format " + FORMAT);
+    }
+
+    private Optional<String> key(Tool.Call call, Supplier<String> version) {
+      if (Boolean.getBoolean("no-cache")) return Optional.empty();
+      if (call.inputs().isEmpty() || call.outputs().isEmpty()) return Optional.empty();
+      try {
+        return Optional.of(key(call, version.get()));
+      } catch (Exception e) {
+        log(Level.WARNING, "Computing cache key of %s failed: %s", call.name(), e);
+        return Optional.empty();
+      }
+    }
+
+    /** Restore the outputs of the given call, return {@code true} if the key was found. */
+    boolean restore(Tool.Call call, String key) {
+      var entry = directory.resolve(key);
+      if (Files.notExists(entry)) return false;
+      try {
+        var outputs = List.copyOf(new TreeSet<>(call.outputs()));
+        for (int index = 0; index < outputs.size(); index++) {
+          var output = outputs.get(index);
+          delete(output);
+          copy(entry.resolve(String.valueOf(index)), output);
+        }
+        log(Level.DEBUG, "  restored outputs from cache entry %s", key);
+        return true;
+      } catch (Exception e) {
+        log(Level.WARNING, "Restoring outputs of %s failed: %s", call.name(), e);
+        return false;
+      }
+    }
+
+    /** Store all outputs of the given call under the specified key. */
+    void store(Tool.Call call, String key) {
+      var entry = directory.resolve(key);
+      var temporary = directory.resolve(key + ".tmp");
+      try {
+        var outputs = List.copyOf(new TreeSet<>(call.outputs()));
+        if (!outputs.stream().allMatch(Files::exists)) return;
+        delete(temporary);
+        for (int index = 0; index < outputs.size(); index++) {
+          copy(outputs.get(index), temporary.resolve(String.valueOf(index)));
+        }
+        delete(entry);
+        Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE);
+      } catch (Exception e) {
+        log(Level.WARNING, "Storing outputs of %s failed: %s", call.name(), e);
+      }
+    }
+
+    /**
+     * Compute hash of call name, arguments, tool version, and contents of all input files.
+     *
+     * <p>Compiled modules read only through their public API contribute their fingerprint instead
+     * of the contents of their class files.
+     */
+    String key(Tool.Call call, String version) throws Exception {
+      var digest = MessageDigest.getInstance("SHA-256");
+      var strings = new ArrayList<String>();
+      strings.add(call.name());
+      strings.addAll(call.args());
+      strings.add(version);
+      for (var string : strings) digest.update((string + "\n").getBytes(StandardCharsets.UTF_8));
+      for (var input : new TreeSet<>(call.inputs())) {
+        digest.update((input + "\n").getBytes(StandardCharsets.UTF_8));
+        if (Files.notExists(input)) continue;
+        if (call.apis().contains(input)) {
+          for (var line : Fingerprint.of(input)) {
+            digest.update((line + "\n").getBytes(StandardCharsets.UTF_8));
+          }
+          continue;
+        }
+        try (var stream = Files.walk(input)) {
+          var files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+          for (var file : files) {
+            digest.update((input.relativize(file) + "\n").getBytes(StandardCharsets.UTF_8));
+            digest.update(Files.readAllBytes(file));
+          }
+        }
+      }
+      return String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+
+    private String version(ToolProvider tool) {
+      var out = new StringWriter();
+      var writer = new PrintWriter(out);
+      var code = tool.run(writer, writer, "--version");
+      if (code != 0) throw new IllegalStateException(tool.name() + " --version failed: " + code);
+      return out.toString().strip();
+    }
+
+    private void copy(Path source, Path target) throws Exception {
+      try (var stream = Files.walk(source)) {
+        for (var path : stream.collect(Collectors.toList())) {
+          var destination = target.resolve(source.relativize(path).toString());
+          if (Files.isDirectory(path)) {
+            Files.createDirectories(destination);
+            continue;
+          }
+          Files.createDirectories(destination.getParent());
+          Files.copy(path, destination, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+      }
+    }
+
+    private void delete(Path root) throws Exception {
+      if (Files.notExists(root)) return;
+      try (var stream = Files.walk(root)) {
+        var paths = stream.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        for (var path : paths) Files.delete(path);
+      }
+    }
+  }
+
+  /**
+   * Public API of a compiled module read from its class files.
+   *
+   * <p>The fingerprint consists of the requires and exports directives of the module descriptor
+   * and of the public and protected signatures of all public types in exported packages, including
+   * values of constants a compiler may inline into dependent code. Changes of method bodies and of
+   * private members or non-exported types do not alter the fingerprint.
+   */
+  static final class Fingerprint {
+
+    /** Return the lines describing the public API of the given exploded module directory. */
+    static List<String> of(Path module) throws IOException {
+      ModuleDescriptor descriptor;
+      try (var stream = Files.newInputStream(module.resolve("module-info.class"))) {
+        descriptor = ModuleDescriptor.read(stream);
+      }
+      var lines = new ArrayList<String>();
+      lines.add("module " + new TreeSet<>(descriptor.modifiers()) + " " + descriptor.name());
+      for (var requires : new TreeSet<>(descriptor.requires())) {
+        lines.add("requires " + new TreeSet<>(requires.modifiers()) + " " + requires.name());
+      }
+      var packages = new TreeSet<String>();
+      for (var exports : new TreeSet<>(descriptor.exports())) {
+        packages.add(exports.source());
+        lines.add("exports " + exports.source() + " to " + new TreeSet<>(exports.targets()));
+      }
+      try (var stream = Files.walk(module)) {
+        var files =
+            stream
+                .filter(path -> path.getNameCount() > module.getNameCount() + 1)
+                .filter(path -> path.getFileName().toString().endsWith(".class"))
+                .sorted()
+                .collect(Collectors.toList());
+        for (var file : files) {
+          var directory = module.relativize(file.getParent()).toString();
+          if (!packages.contains(directory.replace(File.separatorChar, '.'))) continue;
+          lines.addAll(signatures(Files.readAllBytes(file)));
+        }
+      }
+      return lines;
+    }
+
+    /** Return the header line and sorted member lines of a public type, or an empty list. */
+    static List<String> signatures(byte[] bytes) throws IOException {
+      var in = new DataInputStream(new ByteArrayInputStream(bytes));
+      if (in.readInt() != 0xCAFEBABE) throw new IOException("Not a class file");
+      in.skipBytes(4); // minor and major version
+      var pool = new Object[in.readUnsignedShort()];
+      var tags = new int[pool.length];
+      for (int index = 1; index < pool.length; index++) {
+        var tag = tags[index] = in.readUnsignedByte();
+        switch (tag) {
+          case 1: // Utf8
+            pool[index] = in.readUTF();
+            break;
+          case 3: // Integer
+            pool[index] = in.readInt();
+            break;
+          case 4: // Float
+            pool[index] = in.readFloat();
+            break;
+          case 5: // Long, occupies two entries
+            pool[index++] = in.readLong();
+            break;
+          case 6: // Double, occupies two entries
+            pool[index++] = in.readDouble();
+            break;
+          case 7: // Class
+          case 8: // String
+          case 16: // MethodType
+          case 19: // Module
+          case 20: // Package
+            pool[index] = in.readUnsignedShort();
+            break;
+          case 15: // MethodHandle
+            in.skipBytes(3);
+            break;
+          case 9: // Fieldref
+          case 10: // Methodref
+          case 11: // InterfaceMethodref
+          case 12: // NameAndType
+          case 17: // Dynamic
+          case 18: // InvokeDynamic
+            in.skipBytes(4);
+            break;
+          default:
+            throw new IOException("Unknown constant pool tag: " + tag);
+        }
+      }
+      var access = in.readUnsignedShort();
+      if ((access & 0x0001) == 0) return List.of(); // not public
+      var name = string(pool, in.readUnsignedShort());
+      var header = new StringBuilder(String.format("%s %04x", name, access & ~0x0020));
+      var superclass = in.readUnsignedShort();
+      if (superclass != 0) header.append(" extends ").append(string(pool, superclass));
+      var interfaces = in.readUnsignedShort();
+      for (int i = 0; i < interfaces; i++) {
+        header.append(i == 0 ? " implements " : ",").append(string(pool, in.readUnsignedShort()));
       }
+      var members = new TreeSet<String>();
+      for (var kind : List.of("field", "method")) {
+        var mask = kind.equals("field") ? 0x401D : 0x049D;
+        var count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+          var flags = in.readUnsignedShort();
+          var member = kind + " " + pool[in.readUnsignedShort()] + pool[in.readUnsignedShort()];
+          var attributes = attributes(in, pool, tags);
+          if ((flags & 0x0005) == 0 || (flags & 0x1000) != 0) continue; // private or synthetic
+          members.add(String.format("%s %s %04x%s", name, member, flags & mask, attributes));
+        }
+      }
+      header.append(attributes(in, pool, tags));
+      var lines = new ArrayList<String>();
+      lines.add(header.toString());
+      lines.addAll(members);
+      return lines;
+    }
+
+    /** Read attributes and return the API-relevant ones as a string. */
+    private static String attributes(DataInputStream in, Object[] pool, int[] tags)
+        throws IOException {
+      var builder = new StringBuilder();
+      var count = in.readUnsignedShort();
+      for (int i = 0; i < count; i++) {
+        var name = (String) pool[in.readUnsignedShort()];
+        var length = in.readInt();
+        switch (name) {
+          case "Signature":
+            builder.append(" signature ").append(pool[in.readUnsignedShort()]);
+            break;
+          case "ConstantValue":
+            var index = in.readUnsignedShort();
+            var value = tags[index] == 8 ? '"' + string(pool, index) + '"' : pool[index];
+            builder.append(" = ").append(value);
+            break;
+          case "Exceptions":
+            var exceptions = in.readUnsignedShort();
+            builder.append(" throws");
+            for (int j = 0; j < exceptions; j++) {
+              builder.append(' ').append(string(pool, in.readUnsignedShort()));
+            }
+            break;
+          default:
+            in.skipBytes(length);
+        }
+      }
+      return builder.toString();
+    }
+
+    /** Return the string referenced by the Class or String entry at the given index. */
+    private static String string(Object[] pool, int index) {
+      return (String) pool[(int) pool[index]];
+    }
+  }
+
+  /**
+   * Writer logging each line of tool output as soon as it is complete.
+   *
+   * <p>Lines exceeding the limit of characters per writer, configurable via system property {@code
+   * tool-output-limit}, are not kept in memory but written to the given file instead.
+   */
+  private class LineWriter extends Writer {
+
+    private final Level level;
+    private final Path file;
+    private final int limit = Integer.getInteger("tool-output-limit", 1 << 20);
+    private final StringBuilder line = new StringBuilder();
+    private final StringBuilder text = new StringBuilder();
+    private Writer spill;
+    private int spilled;
+    private long count;
+
+    LineWriter(Level level, Path file) {
+      this.level = level;
+      this.file = file;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+      count += length;
+      for (int i = offset; i < offset + length; i++) {
+        var c = buffer[i];
+        if (c == '\n') emit();
+        else line.append(c);
+      }
+    }
+
+    private void emit() throws IOException {
+      var length = line.length();
+      if (length > 0 && line.charAt(length - 1) == '\r') line.setLength(--length);
+      var string = line.toString();
+      line.setLength(0);
+      if (spill == null && text.length() + length < limit) {
+        text.append(string).append('\n');
+        log(level, "  %s", string);
+        return;
+      }
+      if (spill == null) {
+        Files.createDirectories(file.getParent());
+        spill = Files.newBufferedWriter(file);
+      }
+      spill.write(string);
+      spill.write('\n');
+      spilled++;
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() throws IOException {
+      if (line.length() > 0) emit();
+      if (spill == null) return;
+      spill.close();
+      log(level, "  [%d more lines written to %s]", spilled, file);
+    }
+
+    @Override
+    public String toString() {
+      if (spill == null) return text.toString();
+      return text + "[" + spilled + " more lines written to " + file + "]";
+    }
+  }
+
+  /** Build summary. */
+  private class Summary {
+
+    /** Lock-free queue appended to by all threads, its entries are formatted when written. */
+    Queue<Logger.Entry> entries = new ConcurrentLinkedQueue<>();
+
+    void write(Path file) throws Exception {
+      var event = new Events.SummaryWrite();
+      event.begin();
+      var lines = new ArrayList<String>();
+      lines.add("# Project Build Summary");
+      lines.add("## Plan");
+      Tool.print(plan(), "", "  ", (indent, call) -> lines.add(indent + " - " + call.toMarkDown()));
+      lines.addAll(criticalPath());
+      lines.add("## Log");
+      lines.add("```log");
+      entries.forEach(entry -> lines.add(" - " + entry.toString(Instant.EPOCH)));
+      lines.add("```");
+      Files.write(file, lines);
+      event.file = file.toString();
+      event.lines = lines.size();
+      event.commit();
+    }
+
+    /** Compare total work, wall time, and the longest chain of dependent calls. */
+    List<String> criticalPath() {
+      var path = trace.criticalPath();
+      if (path.isEmpty()) return List.of();
+      var spans = List.copyOf(trace.spans);
+      var work = spans.stream().mapToLong(Span::duration).sum();
+      var start = spans.stream().mapToLong(span -> span.start).min().orElseThrow();
+      var wall = spans.stream().mapToLong(span -> span.end).max().orElseThrow() - start;
+      var critical = path.stream().mapToLong(Span::duration).sum();
+      var lines = new ArrayList<String>();
+      lines.add("## Critical Path");
+      var ms = 1_000_000;
+      lines.add(String.format(" - Wall time: %d ms", wall / ms));
+      lines.add(String.format(" - Total work: %d ms in %d calls", work / ms, spans.size()));
+      lines.add(String.format(" - Critical path: %d ms in %d calls", critical / ms, path.size()));
+      var achieved = work / (double) Math.max(1, wall);
+      var achievable = work / (double) Math.max(1, critical);
+      lines.add(String.format(" - Achieved speed-up: %.2f", achieved));
+      lines.add(String.format(" - Achievable speed-up: %.2f", achievable));
+      lines.add("");
+      lines.add("Longest calls on the critical path:");
+      path.stream()
+          .sorted(Comparator.comparingLong(Span::duration).reversed())
+          .limit(10)
+          .forEach(
+              span ->
+                  lines.add(
+                      String.format(
+                          " - %d ms (%d%%) %s",
+                          span.duration() / ms,
+                          100 * span.duration() / Math.max(1, critical),
+                          span.node.call().toMarkDown())));
+      return lines;
+    }
+  }
+
+  /**
+   * Execution trace of all calls, written in Chrome's trace event format.
+   *
+   * <p>Each call is recorded with its thread, its start and end time, and its outcome. A plan spans
+   * from the earliest start to the latest end of its nested calls, plans are shown on separate
+   * tracks nested like the plan tree. A plan starts on the track of its parent plan and moves on to
+   * the next track while it overlaps a plan there that doesn't enclose it, like a parallel sibling.
+   * Tool provider lookups are shown on the thread that resolved them.
+   */
+  class Trace {
+
+    private final long origin = System.nanoTime();
+    private final Queue<Span> spans = new ConcurrentLinkedQueue<>();
+
+    /** Run the call of the given node and record its span. */
+    void record(Tool.Graph.Node node, Function<Tool.Call, String> runner) {
+      var thread = Thread.currentThread();
+      var start = System.nanoTime();
+      var outcome = "failed";
+      try {
+        outcome = runner.apply(node.call());
+      } finally {
+        record(new Span(node, thread, start, System.nanoTime(), outcome));
+      }
+    }
+
+    /** Record the given span of a completed call. */
+    void record(Span span) {
+      spans.add(span);
+    }
+
+    /** Return the spans of the longest chain of dependent calls, in execution order. */
+    List<Span> criticalPath() {
+      var finish = new HashMap<Tool.Graph.Node, Long>();
+      var previous = new HashMap<Tool.Graph.Node, Span>();
+      var recorded = new HashMap<Tool.Graph.Node, Span>();
+      Span last = null;
+      for (var span : spans) { // in order of completion, predecessors come first
+        var ready = 0L;
+        for (var predecessor : span.node.predecessors()) {
+          var time = finish.getOrDefault(predecessor, -1L);
+          if (time <= ready) continue;
+          ready = time;
+          previous.put(span.node, recorded.get(predecessor));
+        }
+        finish.put(span.node, ready + span.duration());
+        recorded.put(span.node, span);
+        if (last == null || finish.get(span.node) > finish.get(last.node)) last = span;
+      }
+      var path = new ArrayList<Span>();
+      for (var span = last; span != null; span = previous.get(span.node)) path.add(0, span);
+      return path;
+    }
+
+    void write(Path file) throws Exception {
+      var events = new ArrayList<String>();
+      var threads = new TreeMap<Long, String>();
+      var plans = new LinkedHashMap<Tool.Plan, Span>();
+      var parents = new HashMap<Tool.Plan, Tool.Plan>();
+      for (var span : spans) {
+        threads.put(span.thread, span.name);
+        events.add(event(span.node.call(), "call", span, span.thread));
+        var enclosing = span.node.plans();
+        for (var plan : enclosing) plans.merge(plan, span, Span::merge);
+        for (int i = 1; i < enclosing.size(); i++) {
+          parents.put(enclosing.get(i), enclosing.get(i - 1));
+        }
+      }
+      var tracks = new ArrayList<List<Tool.Plan>>();
+      var placed = new HashMap<Tool.Plan, Integer>();
+      for (var plan : plans(plans, parents)) {
+        var span = plans.get(plan);
+        var track = parents.containsKey(plan) ? placed.get(parents.get(plan)) : 0;
+        while (track < tracks.size() && !fits(tracks.get(track), plan, plans, parents)) track++;
+        if (track == tracks.size()) tracks.add(new ArrayList<>());
+        tracks.get(track).add(plan);
+        placed.put(plan, track);
+        threads.put((long) -track, track == 0 ? "Plans" : "Plans " + (track + 1));
+        events.add(event(plan, "plan", span, -track));
+      }
+      for (var entry : registry.resolved()) {
+        if (entry.start < origin) continue; // resolved during an earlier run
+        threads.putIfAbsent(entry.thread.getId(), entry.thread.getName());
+        events.add(
+            String.format(
+                "{\"name\":%s,\"cat\":\"lookup\",\"ph\":\"X\",\"pid\":1,\"tid\":%d,\"ts\":%d,"
+                    + "\"dur\":%d,\"args\":{\"found\":%b}}",
+                json("lookup " + entry.name()),
+                entry.thread.getId(),
+                (entry.start - origin) / 1000,
+                (entry.end - entry.start) / 1000,
+                entry.provider().isPresent()));
+      }
+      threads.forEach(
+          (id, name) ->
+              events.add(
+                  String.format(
+                      "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":%d,"
+                          + "\"args\":{\"name\":%s}}",
+                      id, json(name))));
+      var lines = new ArrayList<String>();
+      lines.add("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+      lines.add(String.join(",\n", events));
+      lines.add("]}");
+      Files.write(file, lines);
+    }
+
+    /** Return plans sorted by start time, each plan preceded by its parent plan. */
+    private List<Tool.Plan> plans(Map<Tool.Plan, Span> plans, Map<Tool.Plan, Tool.Plan> parents) {
+      var depths = new HashMap<Tool.Plan, Integer>();
+      for (var plan : plans.keySet()) {
+        var depth = 0;
+        for (var parent = parents.get(plan); parent != null; parent = parents.get(parent)) depth++;
+        depths.put(plan, depth);
+      }
+      var sorted = new ArrayList<>(plans.keySet());
+      sorted.sort(
+          Comparator.<Tool.Plan>comparingLong(plan -> plans.get(plan).start)
+              .thenComparingLong(plan -> -plans.get(plan).end)
+              .thenComparingInt(depths::get));
+      return sorted;
+    }
+
+    /** Return {@code true} if the plan overlaps no plan of the track except its ancestors. */
+    private boolean fits(
+        List<Tool.Plan> track,
+        Tool.Plan plan,
+        Map<Tool.Plan, Span> plans,
+        Map<Tool.Plan, Tool.Plan> parents) {
+      var ancestors = new HashSet<Tool.Plan>();
+      for (var parent = parents.get(plan); parent != null; parent = parents.get(parent)) {
+        ancestors.add(parent);
+      }
+      var span = plans.get(plan);
+      for (var other : track) {
+        if (ancestors.contains(other)) continue;
+        if (plans.get(other).end <= span.start || span.end <= plans.get(other).start) continue;
+        return false;
+      }
+      return true;
+    }
+
+    private String event(Tool.Call call, String category, Span span, long tid) {
+      return String.format(
+          "{\"name\":%s,\"cat\":\"%s\",\"ph\":\"X\",\"pid\":1,\"tid\":%d,\"ts\":%d,\"dur\":%d,"
+              + "\"args\":{\"call\":%s,\"outcome\":%s}}",
+          json(call.name()),
+          category,
+          tid,
+          (span.start - origin) / 1000,
+          (span.end - span.start) / 1000,
+          json(call.toString()),
+          json(span.outcome));
+    }
+
+    private String json(String string) {
+      var builder = new StringBuilder("\"");
+      for (var c : string.toCharArray()) {
+        if (c == '"' || c == '\\') builder.append('\\').append(c);
+        else if (c < 0x20) builder.append(String.format("\\u%04x", (int) c));
+        else builder.append(c);
+      }
+      return builder.append('"').toString();
+    }
+  }
+
+  /** Recorded execution of a single call, or the merged extent of several calls. */
+  static final class Span {
+    private final Tool.Graph.Node node;
+    private final long thread;
+    private final String name;
+    private final long start;
+    private final long end;
+    private final String outcome;
+
+    Span(Tool.Graph.Node node, Thread thread, long start, long end, String outcome) {
+      this(node, thread.getId(), thread.getName(), start, end, outcome);
+    }
+
+    Span(Tool.Graph.Node node, long thread, String name, long start, long end, String outcome) {
+      this.node = node;
+      this.thread = thread;
+      this.name = name;
+      this.start = start;
+      this.end = end;
+      this.outcome = outcome;
+    }
+
+    long duration() {
+      return end - start;
+    }
+
+    Span merge(Span other) {
+      var failed = outcome.equals("failed") || other.outcome.equals("failed");
+      var start = Math.min(this.start, other.start);
+      var end = Math.max(this.end, other.end);
+      return new Span(node, thread, name, start, end, failed ? "failed" : "done");
+    }
+  }
+
+  /** Flight recorder events, their overhead is negligible while no recording is running. */
+  static final class Events {
+
+    private Events() {}
+
+    @Name("make.Run")
+    @Label("Run")
+    @Category("Make.java")
+    @Description("Execution of a call tree")
+    static final class Run extends Event {
+      @Label("Call")
+      String call;
+
+      @Label("Calls")
+      int calls;
+    }
+
+    @Name("make.ToolCall")
+    @Label("Tool Call")
+    @Category("Make.java")
+    static final class ToolCall extends Event {
+      @Label("Tool")
+      String tool;
+
+      @Label("Arguments")
+      int arguments;
+
+      @Label("Exit Code")
+      int code;
+
+      @Label("Output Characters")
+      long output;
+
+      @Label("Outcome")
+      String outcome;
+    }
+
+    @Name("make.CacheLookup")
+    @Label("Cache Lookup")
+    @Category("Make.java")
+    static final class CacheLookup extends Event {
+      @Label("Tool")
+      String tool;
+
+      @Label("Key")
+      String key;
+
+      @Label("Hit")
+      boolean hit;
+    }
+
+    @Name("make.LayoutScan")
+    @Label("Layout Scan")
+    @Category("Make.java")
+    static final class LayoutScan extends Event {
+      @Label("Operation")
+      String operation;
+
+      @Label("Root")
+      String root;
+
+      @Label("Realm")
+      String realm;
+
+      @Label("Layout")
+      String layout;
+
+      @Label("Count")
+      int count;
+
+      void commit(String operation, Path root, String realm, String layout, int count) {
+        if (!shouldCommit()) return;
+        this.operation = operation;
+        this.root = root.toString();
+        this.realm = realm;
+        this.layout = layout;
+        this.count = count;
+        commit();
+      }
+    }
+
+    @Name("make.SummaryWrite")
+    @Label("Summary Write")
+    @Category("Make.java")
+    static final class SummaryWrite extends Event {
+      @Label("File")
+      String file;
+
+      @Label("Lines")
+      int lines;
+    }
+  }
+
+  /**
+   * Build daemon keeping a warm JVM between invocations.
+   *
+   * <p>The daemon listens on a loopback port and writes that port and an access token into the
+   * file {@code .make-java/daemon.txt}. A client sends the token, its verbosity, its build options,
+   * and its arguments, then prints all log lines streamed back until the exit code arrives. Build
+   * options are the system properties named in {@link #OPTIONS}, they are set in the daemon for the
+   * duration of a single build. Project and plan are reused for as long as the build options, all
+   * module declarations, and the directories of all module sources are unchanged.
+   */
+  public static final class Daemon {
+
+    /** Argument telling a running daemon to stop. */
+    public static final String STOP = "--stop-daemon";
+
+    /** Names of system properties configuring a build, forwarded from a client to the daemon. */
+    public static final List<String> OPTIONS =
+        List.of(
+            "compile-headers",
+            "compile-per-module",
+            "dry-run",
+            "memory-budget",
+            "no-cache",
+            "no-shared-file-manager",
+            "parallelism",
+            "tool-output-limit",
+            "virtual-threads",
+            "worker-jvm-options",
+            "worker-memory-limit",
+            "workers");
+
+    /** Forward the arguments to a running daemon and return its exit code, if one is running. */
+    public static OptionalInt connect(Folder folder, List<String> args) {
+      return connect(folder, args, Boolean.getBoolean("verbose"));
+    }
+
+    /** Forward verbosity, build options, and arguments to a running daemon, if one is running. */
+    public static OptionalInt connect(Folder folder, List<String> args, boolean verbose) {
+      var file = folder.out("daemon.txt");
+      if (Files.notExists(file)) return OptionalInt.empty();
+      try {
+        var lines = Files.readAllLines(file);
+        var port = Integer.parseInt(lines.get(0));
+        try (var socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+          var output = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+          var writer = new PrintWriter(output, true);
+          writer.println(lines.get(1));
+          writer.println(verbose);
+          var options = options();
+          writer.println(options.size());
+          options.forEach((key, value) -> writer.println(Worker.escape(key + "=" + value)));
+          writer.println(args.size());
+          args.forEach(argument -> writer.println(Worker.escape(argument)));
+          var input = new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8);
+          var reader = new BufferedReader(input);
+          for (var line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (line.startsWith("X ")) return OptionalInt.of(Integer.parseInt(line.substring(2)));
+            var stream = line.startsWith("E ") ? System.err : System.out;
+            stream.println(line.substring(2));
+          }
+          return OptionalInt.of(1);
+        }
+      } catch (ConnectException e) {
+        file.toFile().delete(); // stale file of a daemon that is gone
+        return OptionalInt.empty();
+      } catch (Exception e) {
+        return OptionalInt.empty();
+      }
+    }
+
+    /** Return the build options set in this JVM. */
+    private static Map<String, String> options() {
+      var options = new TreeMap<String, String>();
+      for (var name : OPTIONS) {
+        var value = System.getProperty(name);
+        if (value != null) options.put(name, value);
+      }
+      return options;
+    }
+
+    /** Set the given build options and clear all others. */
+    private static void apply(Map<String, String> options) {
+      for (var name : OPTIONS) {
+        var value = options.get(name);
+        if (value == null) System.clearProperty(name);
+        else System.setProperty(name, value);
+      }
+    }
+
+    private final Folder folder;
+    private final Function<Logger, Project> discovery;
+    private final String token;
+    private final Tool.Registry registry = Tool.Registry.ofDefaults();
+    private Snapshot snapshot;
+
+    /** Create a daemon building the project created by the given discovery function. */
+    public Daemon(Folder folder, Function<Logger, Project> discovery) {
+      this.folder = folder;
+      this.discovery = discovery;
+      this.token = UUID.randomUUID().toString();
+      this.snapshot = null;
+    }
+
+    /** Serve build requests one after the other until a client asks the daemon to stop. */
+    public void serve() throws Exception {
+      var file = folder.out("daemon.txt");
+      try (var server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+        var directory = Files.createDirectories(file.getParent());
+        var temporary = directory.resolve("daemon.tmp");
+        Files.deleteIfExists(temporary);
+        if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+          var permissions = PosixFilePermissions.fromString("rw-------"); // token is a secret
+          Files.createFile(temporary, PosixFilePermissions.asFileAttribute(permissions));
+        }
+        Files.write(temporary, List.of(String.valueOf(server.getLocalPort()), token));
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        try {
+          while (true) {
+            try (var socket = server.accept()) {
+              if (!handle(socket)) return;
+            } catch (IOException | RuntimeException e) {
+              System.err.println("Handling request failed: " + e);
+            }
+          }
+        } finally {
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+
+    private boolean handle(Socket socket) throws IOException {
+      var input = new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8);
+      var reader = new BufferedReader(input);
+      var output = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+      var writer = new PrintWriter(output, true);
+      if (!token.equals(reader.readLine())) return true;
+      var verbose = Boolean.parseBoolean(reader.readLine());
+      var options = new TreeMap<String, String>();
+      var count = Integer.parseInt(reader.readLine());
+      for (int i = 0; i < count; i++) {
+        var option = Worker.unescape(reader.readLine());
+        var separator = option.indexOf('=');
+        options.put(option.substring(0, separator), option.substring(separator + 1));
+      }
+      var args = new ArrayList<String>();
+      var size = Integer.parseInt(reader.readLine());
+      for (int i = 0; i < size; i++) args.add(Worker.unescape(reader.readLine()));
+      if (args.contains(STOP)) {
+        writer.println("X 0");
+        return false;
+      }
+      var logger = new RemoteLogger(writer, verbose);
+      var code = 0;
+      var defaults = options();
+      apply(options);
+      try {
+        logger.log(Level.INFO, "Daemon build (args=%s, options=%s)", args, options);
+        var snapshot = snapshot(logger, options);
+        new Make(logger, folder, snapshot.project, snapshot.plan, registry).run();
+      } catch (Throwable throwable) {
+        logger.log(Level.ERROR, "%s", throwable);
+        code = 1;
+      } finally {
+        apply(defaults);
+      }
+      writer.println("X " + code);
+      return true;
+    }
+
+    private Snapshot snapshot(Logger logger, Map<String, String> options) {
+      if (snapshot != null && snapshot.isCurrent(options)) {
+        logger.log(Level.DEBUG, "Reusing project and plan of previous request");
+        return snapshot;
+      }
+      var project = discovery.apply(logger);
+      snapshot = new Snapshot(project, Tool.Plan.of(logger, folder, project), options);
+      return snapshot;
+    }
+
+    /**
+     * Project and plan with the build options they were created with and modification times.
+     *
+     * <p>Times are recorded for all module declarations and for all directories below the source
+     * directories of every module, as adding or removing a source file changes the set of files
+     * passed to the compiler by the plan.
+     */
+    private static final class Snapshot {
+      private final Project project;
+      private final Tool.Plan plan;
+      private final Map<String, String> options;
+      private final Map<Path, Long> times;
+
+      Snapshot(Project project, Tool.Plan plan, Map<String, String> options) {
+        this.project = project;
+        this.plan = plan;
+        this.options = Map.copyOf(options);
+        this.times = project.index().map(index -> times(project, index)).orElse(null);
+      }
+
+      boolean isCurrent(Map<String, String> options) {
+        if (times == null || !this.options.equals(options)) return false;
+        var index = project.index().orElseThrow();
+        return index.isCurrent() && times.equals(times(project, index));
+      }
+
+      private static Map<Path, Long> times(Project project, Project.SourceIndex index) {
+        var times = new TreeMap<Path, Long>();
+        for (var declaration : index.declarations()) {
+          var file = index.root().resolve(declaration);
+          try {
+            times.put(declaration, Files.getLastModifiedTime(file).toMillis());
+          } catch (IOException e) {
+            times.put(declaration, -1L);
+          }
+        }
+        for (var realm : project.realms()) {
+          for (var module : realm.modules()) {
+            for (var path : project.layout().paths(realm.name(), module)) {
+              directories(index.root(), path, times);
+            }
+          }
+        }
+        return times;
+      }
+
+      private static void directories(Path root, Path path, Map<Path, Long> times) {
+        if (!Files.isDirectory(root.resolve(path))) {
+          times.put(path, -1L);
+          return;
+        }
+        try {
+          Files.walkFileTree(
+              root.resolve(path),
+              new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                  times.put(root.relativize(dir), attrs.lastModifiedTime().toMillis());
+                  return FileVisitResult.CONTINUE;
+                }
+              });
+        } catch (IOException e) {
+          times.put(path, -1L);
+        }
+      }
+    }
+
+    /** Logger streaming entries to a client, prefixing each line with its target stream. */
+    private static final class RemoteLogger implements Logger {
+      private final PrintWriter writer;
+      private final boolean verbose;
+      private final Instant start = Instant.now();
+
+      RemoteLogger(PrintWriter writer, boolean verbose) {
+        this.writer = writer;
+        this.verbose = verbose;
+      }
+
+      @Override
+      public synchronized Logger log(Entry entry) {
+        var level = entry.level();
+        if (!isLoggable(level)) return this;
+        var prefix = level.compareTo(Level.WARNING) < 0 ? "O " : "E ";
+        var string = verbose ? entry.toString(start) : entry.message();
+        string.lines().forEach(line -> writer.println(prefix + line));
+        return this;
+      }
+
+      @Override
+      public boolean isLoggable(Level level) {
+        return verbose || level.compareTo(Level.INFO) >= 0;
+      }
+
+      @Override
+      public boolean verbose() {
+        return verbose;
+      }
+    }
+  }
+
+  /**
+   * Watch mode rebuilding the affected part of the plan whenever sources or libraries change.
+   *
+   * <p>Bursts of file system events are collected until no further event arrives within the
+   * debounce period, configurable via system property {@code watch-debounce} in milliseconds.
+   * Changes of module declarations, libraries, or files outside of all known module source
+   * directories lead to a new discovery of the project and a run of its entire plan. Otherwise,
+   * only calls reading a changed file and all calls depending on them are run.
+   */
+  public static final class Watcher {
+
+    private final Logger logger;
+    private final Folder folder;
+    private final Function<Logger, Project> discovery;
+    private final long debounce = Long.getLong("watch-debounce", 200);
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+    private final Tool.Registry registry = Tool.Registry.ofDefaults();
+    private Project project;
+    private Tool.Plan plan;
+
+    public Watcher(Logger logger, Folder folder, Function<Logger, Project> discovery) {
+      this.logger = logger;
+      this.folder = folder;
+      this.discovery = discovery;
+    }
+
+    /** Build the project and rebuild it on changes until the current thread is interrupted. */
+    public void watch() throws Exception {
+      try (var service = FileSystems.getDefault().newWatchService()) {
+        register(service, folder.src());
+        register(service, folder.lib());
+        build(Set.of());
+        while (!Thread.currentThread().isInterrupted()) {
+          logger.log(Level.INFO, "Watching %s and %s for changes", folder.src(), folder.lib());
+          try {
+            build(changes(service));
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      }
+    }
+
+    private void register(WatchService service, Path root) throws Exception {
+      if (!Files.isDirectory(root)) return;
+      try (var stream = Files.walk(root)) {
+        for (var directory : stream.filter(Files::isDirectory).collect(Collectors.toList())) {
+          var kinds = new WatchEvent.Kind<?>[] {ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY};
+          keys.put(directory.register(service, kinds), directory);
+        }
+      }
+    }
+
+    /** Wait for changes and collect all paths changed until the debounce period passed. */
+    private Set<Path> changes(WatchService service) throws Exception {
+      var changes = new TreeSet<Path>();
+      var key = service.take();
+      while (key != null) {
+        var directory = keys.get(key);
+        for (var event : key.pollEvents()) {
+          if (event.kind() == OVERFLOW || directory == null) {
+            changes.add(folder.src()); // unknown changes, a structural one
+            continue;
+          }
+          var path = directory.resolve((Path) event.context());
+          changes.add(path);
+          var sources = event.kind() != ENTRY_MODIFY && path.toString().endsWith(".java");
+          if (sources) changes.add(folder.src()); // added or removed sources change the plan
+          if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) register(service, path);
+        }
+        if (!key.reset()) keys.remove(key);
+        key = service.poll(debounce, TimeUnit.MILLISECONDS);
+      }
+      return changes;
+    }
+
+    private void build(Set<Path> changes) {
+      var start = Instant.now();
+      try {
+        if (project == null || isStructural(changes)) {
+          project = discovery.apply(logger);
+          plan = Tool.Plan.of(logger, folder, project);
+          new Make(logger, folder, project, plan, registry).run();
+        } else {
+          var graph = Tool.Graph.of(plan);
+          var calls =
+              graph.affected(changes).stream()
+                  .map(Tool.Graph.Node::call)
+                  .collect(Collectors.toList());
+          var modules = new TreeSet<String>();
+          changes.forEach(change -> modules.addAll(modules(change)));
+          var size = graph.nodes().size();
+          logger.log(
+              Level.INFO,
+              "Rebuilding %d of %d calls affected by %d changes in %s",
+              calls.size(),
+              size,
+              changes.size(),
+              modules);
+          if (calls.isEmpty()) return;
+          var affected = Tool.Plan.of("Rebuild affected calls", false, calls);
+          new Make(logger, folder, project, plan, registry).run(affected);
+        }
+        var duration = Duration.between(start, Instant.now()).toMillis();
+        logger.log(Level.INFO, "Build took %d ms", duration);
+      } catch (Throwable throwable) {
+        logger.log(Level.ERROR, "Build failed: %s", throwable);
+      }
+    }
+
+    /** Return {@code true} if the given changes may alter the structure of the project. */
+    private boolean isStructural(Set<Path> changes) {
+      for (var change : changes) {
+        if (change.endsWith("module-info.java")) return true;
+        if (modules(change).isEmpty()) return true;
+      }
+      return false;
+    }
+
+    /** Return realm and module names of all module source directories containing the path. */
+    private Set<String> modules(Path path) {
+      var modules = new TreeSet<String>();
+      var absolute = path.toAbsolutePath().normalize();
+      var src = folder.src().toAbsolutePath().normalize();
+      for (var realm : project.realms()) {
+        for (var module : realm.modules()) {
+          for (var directory : project.layout().paths(realm.name(), module)) {
+            if (!absolute.startsWith(src.resolve(directory))) continue;
+            modules.add(realm.name() + "/" + module);
+          }
+        }
+      }
+      return modules;
+    }
+  }
+
+  /** Well-known directory and file locations. */
+  public /*record*/ static final class Folder {
+
+    public static Folder ofCurrentWorkingDirectory() {
+      return of(Path.of(""));
+    }
+
+    public static Folder of(Path base) {
+      return new Folder(base, base.resolve("src"), base.resolve("lib"), base.resolve(".make-java"));
+    }
+
+    private static Path resolve(Path path, String... more) {
+      if (more.length == 0) return path;
+      return path.resolve(String.join("/", more)).normalize();
+    }
+
+    private final Path base;
+    private final Path src;
+    private final Path lib;
+    private final Path out;
+
+    public Folder(Path base, Path src, Path lib, Path out) {
+      this.base = base;
+      this.src = src;
+      this.lib = lib;
+      this.out = out;
+    }
+
+    public Path base() {
+      return base;
+    }
+
+    public Path base(String... more) {
+      return resolve(base, more);
+    }
+
+    public Path src() {
+      return src;
+    }
+
+    public Path src(String... more) {
+      return resolve(src, more);
+    }
+
+    public Path lib() {
+      return lib;
+    }
+
+    public Path out() {
+      return out;
+    }
+
+    public Path out(String... more) {
+      return resolve(out, more);
+    }
+  }
+
+  /** Tool API with tool call, tool plan, and planner support. */
+  public interface Tool<R> {
+
+    /** Run this tool. */
+    R run(Make make, List<String> arguments) throws Exception;
+
+    /** Run this tool, forking nested work into the given pool of the current run. */
+    default R run(Make make, List<String> arguments, ForkJoinPool pool) throws Exception {
+      return run(make, arguments);
+    }
+
+    /** Recursively print the given tool call to {@link System#out} */
+    static void print(Call root, Logger logger) {
+      print(root, "", "\t", (indent, call) -> logger.log(Level.DEBUG, "%s%s", indent, call));
+    }
+
+    static void print(Call call, String indent, String inc, BiConsumer<String, Call> consumer) {
+      consumer.accept(indent, call);
+      if (call instanceof Tool.Plan) {
+        var plan = ((Tool.Plan) call);
+        for (var child : plan.calls()) print(child, indent + inc, inc, consumer);
+      }
+    }
+
+    /** Built-in tool implementations. */
+    enum Default implements Tool<Make> {
+      /** @see Files#createDirectories(Path, java.nio.file.attribute.FileAttribute[]) */
+      CREATE_DIRECTORIES {
+        @Override
+        public Make run(Make make, List<String> arguments) throws Exception {
+          Files.createDirectories(Path.of(arguments.get(0)));
+          return make;
+        }
+
+        @Override
+        Call.Builder newCall(Object... args) {
+          return super.newCall(args).output(Path.of(args[0].toString()));
+        }
+      },
+      /** @see Headers#compile(List) */
+      COMPILE_HEADERS {
+        @Override
+        public Make run(Make make, List<String> arguments) throws Exception {
+          Headers.compile(arguments);
+          return make;
+        }
+      },
+      /** @see Jar#parse(List) */
+      JAR {
+        @Override
+        public Make run(Make make, List<String> arguments) throws Exception {
+          return run(make, arguments, ForkJoinPool.commonPool());
+        }
+
+        @Override
+        public Make run(Make make, List<String> arguments, ForkJoinPool pool) throws Exception {
+          var listings = new HashMap<Path, List<Path>>();
+          for (var jar : Jar.parse(arguments)) {
+            var entries = jar.write(listings, pool);
+            var copied = jar.copied();
+            make.log(Level.DEBUG, "  %d entries (%d copied) in %s", entries, copied, jar.file());
+          }
+          return make;
+        }
+      },
+      /** Writes all log messages to the file specified by the first argument. */
+      WRITE_SUMMARY {
+        @Override
+        public Make run(Make make, List<String> arguments) throws Exception {
+          var file = Path.of(arguments.get(0));
+          make.summary.write(file);
+          make.trace.write(file.resolveSibling("trace.json"));
+          return make;
+        }
+      };
+
+      Call.Builder newCall(Object... args) {
+        return Call.newCall(name(), args);
+      }
+
+      Call args(Object... args) {
+        return newCall(args).build();
+      }
+    }
+
+    /** A tool call is composed of a name, the arguments, and the paths it reads and writes. */
+    interface Call {
+
+      String name();
+
+      List<String> args();
+
+      /** Paths read by this call, an empty set means unknown. */
+      default Set<Path> inputs() {
+        return Set.of();
+      }
+
+      /** Paths written by this call, an empty set means unknown. */
+      default Set<Path> outputs() {
+        return Set.of();
+      }
+
+      /** Compiled modules among the inputs that are only read through their public API. */
+      default Set<Path> apis() {
+        return Set.of();
+      }
+
+      default String toMarkDown() {
+        return "`" + toString() + "`";
+      }
+
+      static Builder newCall(String name, Object... initials) {
+        return new Builder(name, initials);
+      }
+
+      static /*record*/ Call of(String name, String... args) {
+        return of(name, Set.of(), Set.of(), args);
+      }
+
+      static /*record*/ Call of(String name, Set<Path> inputs, Set<Path> outputs, String... args) {
+        return of(name, inputs, Set.of(), outputs, args);
+      }
+
+      static /*record*/ Call of(
+          String name, Set<Path> inputs, Set<Path> apis, Set<Path> outputs, String... args) {
+        return new Call() {
+
+          private final String $ = name + (args.length == 0 ? "" : " " + String.join(" ", args));
+
+          @Override
+          public String toString() {
+            return $;
+          }
+
+          @Override
+          public String name() {
+            return name;
+          }
+
+          @Override
+          public List<String> args() {
+            return List.of(args);
+          }
+
+          @Override
+          public Set<Path> inputs() {
+            return inputs;
+          }
+
+          @Override
+          public Set<Path> outputs() {
+            return outputs;
+          }
+
+          @Override
+          public Set<Path> apis() {
+            return apis;
+          }
+        };
+      }
+
+      class Builder {
+
+        private final String name;
+        private final List<Object> args;
+        private final Set<Path> inputs;
+        private final Set<Path> apis;
+        private final Set<Path> outputs;
+
+        Builder(String name, Object... initials) {
+          this.name = name;
+          this.args = new ArrayList<>();
+          this.inputs = new LinkedHashSet<>();
+          this.apis = new LinkedHashSet<>();
+          this.outputs = new LinkedHashSet<>();
+          for (var initial : initials) add(initial);
+        }
+
+        public Call build() {
+          var strings = args.stream().map(Object::toString).toArray(String[]::new);
+          return Call.of(name, Set.copyOf(inputs), Set.copyOf(apis), Set.copyOf(outputs), strings);
+        }
+
+        /** Declare a path read by the call. */
+        public Builder input(Path path) {
+          inputs.add(path);
+          return this;
+        }
+
+        /** Declare a compiled module read by the call only through its public API. */
+        public Builder api(Path path) {
+          apis.add(path);
+          return input(path);
+        }
+
+        /** Declare a path written by the call. */
+        public Builder output(Path path) {
+          outputs.add(path);
+          return this;
+        }
+
+        public Builder add(Object arg) {
+          args.add(arg);
+          return this;
+        }
+
+        public Builder add(String key, Object value) {
+          return add(key).add(value);
+        }
+
+        public Builder add(boolean iff, Object arg) {
+          if (iff) add(arg);
+          return this;
+        }
+
+        public Builder add(boolean iff, String key, Object value) {
+          if (iff) add(key, value);
+          return this;
+        }
+
+        public <T> Builder forEach(Iterable<T> iterable, BiConsumer<Builder, T> visitor) {
+          iterable.forEach(item -> visitor.accept(this, item));
+          return this;
+        }
+      }
+    }
+
+    /** A list of tool calls. */
+    interface Plan extends Call {
+
+      boolean parallel();
+
+      List<Call> calls();
+
+      @Override
+      default String toMarkDown() {
+        return toString();
+      }
+
+      static Plan of(Logger logger, Folder folder, Project project) {
+        return new Make.Planner(logger, folder, project).build();
+      }
+
+      static /*record*/ Plan of(String name, boolean parallel, Call... calls) {
+        return of(name, parallel, List.of(calls));
+      }
+
+      static /*record*/ Plan of(String name, boolean parallel, List<Call> calls) {
+        return new Plan() {
+
+          private final String $ = name + " {" + calls.size() + (parallel ? " + parallel}" : "}");
+
+          @Override
+          public String toString() {
+            return $;
+          }
+
+          @Override
+          public String name() {
+            return name;
+          }
+
+          @Override
+          public List<String> args() {
+            return List.of();
+          }
+
+          @Override
+          public boolean parallel() {
+            return parallel;
+          }
+
+          @Override
+          public List<Call> calls() {
+            return calls;
+          }
+        };
+      }
+    }
+
+    /**
+     * Jar archive writer deflating entries in parallel and writing them in sorted order.
+     *
+     * <p>The manifest comes first, followed by all other entries sorted by name. Entries are
+     * compressed in the fork-join pool of the run a bounded number of entries ahead of the one
+     * being written, the central directory is assembled after all entries are written. Listings of
+     * directories are shared by all jar files created by one tool call. All entries carry the same
+     * fixed timestamp, making the jar file a function of the contents of its entries. Zip64 records
+     * are written if the number of entries or offsets exceed the limits of the classic format.
+     *
+     * <p>If an index file is given, it records the checksum, sizes, and location of every entry.
+     * When the jar file is written again, the compressed data of unchanged entries is copied from
+     * the previous jar file without inflating and deflating it.
+     */
+    final class Jar {
+
+      /**
+       * Parse arguments of a {@code JAR} tool call.
+       *
+       * <p>Each {@code --file <path>} starts the description of another jar file, followed by an
+       * optional {@code --no-manifest} flag, an optional {@code --index <path>} option, and {@code
+       * -C <directory>} options naming the directories whose contents are stored in that jar file.
+       */
+      static List<Jar> parse(List<String> arguments) {
+        var jars = new ArrayList<Jar>();
+        var iterator = arguments.iterator();
+        while (iterator.hasNext()) {
+          var argument = iterator.next();
+          if (argument.equals("--file")) {
+            jars.add(new Jar(Path.of(iterator.next())));
+            continue;
+          }
+          if (jars.isEmpty()) throw new IllegalArgumentException("Expected --file: " + argument);
+          var jar = jars.get(jars.size() - 1);
+          if (argument.equals("--no-manifest")) jar.manifest = false;
+          else if (argument.equals("--index")) jar.index = Path.of(iterator.next());
+          else if (argument.equals("-C")) jar.directories.add(Path.of(iterator.next()));
+          else throw new IllegalArgumentException("Unsupported argument: " + argument);
+        }
+        return jars;
+      }
+
+      private static final String MANIFEST = "META-INF/MANIFEST.MF";
+
+      /** Timestamp of all entries in MS-DOS format: 1980-02-01 00:00:00. */
+      private static final long TIME = (2 << 21) | (1 << 16);
+
+      private final Path file;
+      private final List<Path> directories = new ArrayList<>();
+      private boolean manifest = true;
+      private Path index;
+      private int copied;
+
+      private Jar(Path file) {
+        this.file = file;
+      }
+
+      public Path file() {
+        return file;
+      }
+
+      /** Return the number of entries copied from the previous jar file by the last write. */
+      public int copied() {
+        return copied;
+      }
+
+      /** Write this jar file, return the number of entries written. */
+      int write(Map<Path, List<Path>> listings) throws Exception {
+        return write(listings, ForkJoinPool.commonPool());
+      }
+
+      /** Write this jar file compressing entries in the given pool. */
+      int write(Map<Path, List<Path>> listings, ForkJoinPool pool) throws Exception {
+        var paths = new TreeMap<String, Path>();
+        for (var directory : directories) {
+          var listing = listings.get(directory);
+          if (listing == null) listings.put(directory, listing = list(directory));
+          for (var path : listing) {
+            var name = directory.relativize(path).toString().replace('\\', '/');
+            paths.putIfAbsent(Files.isDirectory(path) ? name + "/" : name, path);
+          }
+        }
+        var first = List.of("META-INF/", MANIFEST);
+        var names = new ArrayList<String>();
+        if (manifest || paths.containsKey(MANIFEST)) names.addAll(first);
+        paths.keySet().stream().filter(name -> !first.contains(name)).forEach(names::add);
+
+        var previous = readIndex();
+        var window = 4 * pool.getParallelism();
+        var pending = new ArrayDeque<CompletableFuture<Entry>>();
+        var entries = new ArrayList<Entry>();
+        var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        copied = 0;
+        try {
+          try (var source = previous.isEmpty() ? null : FileChannel.open(file);
+              var stream = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+            var out = new Output(stream);
+            var iterator = names.iterator();
+            try {
+              while (iterator.hasNext() || !pending.isEmpty()) {
+                if (Thread.interrupted()) throw new InterruptedException("Writing " + file);
+                while (iterator.hasNext() && pending.size() < window) {
+                  var name = iterator.next();
+                  var path = paths.get(name);
+                  var old = previous.get(name);
+                  Supplier<Entry> entry = () -> Entry.of(name, path, old, source);
+                  pending.add(CompletableFuture.supplyAsync(entry, pool));
+                }
+                var entry = pending.remove().join();
+                if (entry.copied) copied++;
+                entry.offset = out.count;
+                out.header(0x04034b50, entry).write(entry.data);
+                entry.data = null;
+                entries.add(entry);
+              }
+            } finally {
+              await(pending); // entries read from the source channel that is about to be closed
+            }
+            out.directory(entries);
+          }
+          Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+          Files.deleteIfExists(temporary); // left behind by a failed or interrupted write
+        }
+        writeIndex(entries);
+        return entries.size();
+      }
+
+      /** Wait for the given entries to be compressed, ignoring their failures. */
+      private static void await(Collection<CompletableFuture<Entry>> pending) {
+        for (var future : pending) {
+          try {
+            future.join();
+          } catch (RuntimeException e) {
+            // the write already failed
+          }
+        }
+      }
+
+      /** Read entries of the index file, an empty map if it doesn't describe the jar file. */
+      private Map<String, Entry> readIndex() throws Exception {
+        if (index == null || Files.notExists(index) || Files.notExists(file)) return Map.of();
+        var lines = Files.readAllLines(index);
+        if (lines.isEmpty() || !lines.get(0).equals(stamp())) return Map.of();
+        var entries = new HashMap<String, Entry>();
+        for (var line : lines.subList(1, lines.size())) {
+          var values = line.split(" ", 6);
+          var entry = new Entry(values[5]);
+          entry.method = Integer.parseInt(values[0]);
+          entry.crc = Long.parseLong(values[1], 16);
+          entry.size = Long.parseLong(values[2]);
+          entry.compressed = Long.parseLong(values[3]);
+          entry.offset = Long.parseLong(values[4]);
+          entries.put(values[5], entry);
+        }
+        return entries;
+      }
+
+      private void writeIndex(List<Entry> entries) throws Exception {
+        if (index == null) return;
+        var lines = new ArrayList<String>();
+        lines.add(stamp());
+        for (var entry : entries) {
+          var name = new String(entry.name, StandardCharsets.UTF_8);
+          var values = List.of(entry.method, entry.crc, entry.size, entry.compressed, entry.offset);
+          lines.add(String.format("%d %x %d %d %d ", values.toArray()) + name);
+        }
+        Files.createDirectories(index.toAbsolutePath().getParent());
+        Files.write(index, lines);
+      }
+
+      /** Size and modification time of the jar file, identifying the jar an index belongs to. */
+      private String stamp() throws Exception {
+        return Files.size(file) + " " + Files.getLastModifiedTime(file).toMillis();
+      }
+
+      private static List<Path> list(Path directory) throws Exception {
+        try (var stream = Files.walk(directory)) {
+          return stream.filter(path -> !path.equals(directory)).collect(Collectors.toList());
+        }
+      }
+
+      /** Jar entry holding its compressed data until it is written. */
+      private static final class Entry {
+
+        static Entry of(String name, Path path, Entry previous, FileChannel source) {
+          var entry = new Entry(name);
+          try {
+            if (name.equals(MANIFEST) && path == null) {
+              var manifest = "Manifest-Version: 1.0\r\nCreated-By: Make.java " + VERSION;
+              entry.deflate((manifest + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            } else if (path != null && !name.endsWith("/")) {
+              var bytes = Files.readAllBytes(path);
+              entry.checksum(bytes);
+              if (!entry.copy(previous, source)) entry.deflate(bytes);
+            }
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+          return entry;
+        }
+
+        final byte[] name;
+        int method = 0; // stored
+        long crc;
+        long size;
+        long compressed;
+        long offset;
+        byte[] data = new byte[0];
+        boolean copied;
+
+        Entry(String name) {
+          this.name = name.getBytes(StandardCharsets.UTF_8);
+        }
+
+        void checksum(byte[] bytes) {
+          var checksum = new CRC32();
+          checksum.update(bytes);
+          crc = checksum.getValue();
+          size = bytes.length;
+        }
+
+        /** Copy compressed data of an unchanged entry verified by its previous local header. */
+        boolean copy(Entry previous, FileChannel source) throws IOException {
+          if (previous == null || source == null) return false;
+          if (previous.crc != crc || previous.size != size) return false;
+          var header = ByteBuffer.allocate(30 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+          if (source.read(header, previous.offset) != header.capacity()) return false;
+          if (header.getInt(0) != 0x04034b50) return false;
+          if (header.getShort(8) != previous.method) return false;
+          if (Integer.toUnsignedLong(header.getInt(14)) != crc) return false;
+          if (Integer.toUnsignedLong(header.getInt(18)) != previous.compressed) return false;
+          var stored = Arrays.copyOfRange(header.array(), 30, header.capacity());
+          if (Short.toUnsignedInt(header.getShort(26)) != name.length) return false;
+          if (!Arrays.equals(stored, name)) return false;
+          var extra = Short.toUnsignedInt(header.getShort(28));
+          var position = previous.offset + header.capacity() + extra;
+          var buffer = ByteBuffer.allocate((int) previous.compressed);
+          if (source.read(buffer, position) != buffer.capacity()) return false;
+          method = previous.method;
+          compressed = previous.compressed;
+          data = buffer.array();
+          copied = true;
+          return true;
+        }
+
+        void deflate(byte[] bytes) {
+          checksum(bytes);
+          data = bytes;
+          compressed = bytes.length;
+          var deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+          try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            var out = new ByteArrayOutputStream(bytes.length / 2 + 64);
+            var buffer = new byte[8192];
+            while (!deflater.finished()) out.write(buffer, 0, deflater.deflate(buffer));
+            if (out.size() >= bytes.length) return;
+            method = 8; // deflated
+            data = out.toByteArray();
+            compressed = data.length;
+          } finally {
+            deflater.end();
+          }
+        }
+      }
+
+      /** Little-endian output stream counting the bytes written. */
+      private static final class Output {
+
+        private final OutputStream stream;
+        private long count;
+
+        Output(OutputStream stream) {
+          this.stream = stream;
+        }
+
+        /**
+         * Write a local file header or a central directory header of the given entry.
+         *
+         * <p>Sizes of an entry always fit into 32 bits, its offset may need a zip64 extra field.
+         */
+        Output header(int signature, Entry entry) throws IOException {
+          var central = signature == 0x02014b50;
+          var zip64 = central && entry.offset >= 0xFFFFFFFFL;
+          var version = zip64 ? 45 : 20;
+          int32(signature);
+          if (central) int16(version); // version made by
+          int16(version).int16(0x0800).int16(entry.method).int32(TIME);
+          int32(entry.crc).int32(entry.compressed).int32(entry.size);
+          int16(entry.name.length).int16(zip64 ? 12 : 0);
+          if (central) int16(0).int16(0).int16(0).int32(0);
+          if (central) int32(Math.min(entry.offset, 0xFFFFFFFFL));
+          write(entry.name);
+          if (zip64) int16(0x0001).int16(8).int64(entry.offset);
+          return this;
+        }
+
+        /** Write the central directory of the given entries and the end records. */
+        void directory(List<Entry> entries) throws IOException {
+          var start = count;
+          for (var entry : entries) header(0x02014b50, entry);
+          var length = count - start;
+          var size = entries.size();
+          if (size >= 0xFFFF || start >= 0xFFFFFFFFL || length >= 0xFFFFFFFFL) {
+            var end = count;
+            int32(0x06064b50).int64(44).int16(45).int16(45).int32(0).int32(0);
+            int64(size).int64(size).int64(length).int64(start);
+            int32(0x07064b50).int32(0).int64(end).int32(1); // zip64 end locator
+          }
+          int32(0x06054b50).int16(0).int16(0);
+          int16(Math.min(size, 0xFFFF)).int16(Math.min(size, 0xFFFF));
+          int32(Math.min(length, 0xFFFFFFFFL)).int32(Math.min(start, 0xFFFFFFFFL)).int16(0);
+        }
+
+        Output int16(int value) throws IOException {
+          stream.write(value & 0xFF);
+          stream.write((value >>> 8) & 0xFF);
+          count += 2;
+          return this;
+        }
+
+        Output int32(long value) throws IOException {
+          return int16((int) (value & 0xFFFF)).int16((int) ((value >>> 16) & 0xFFFF));
+        }
+
+        Output int64(long value) throws IOException {
+          return int32(value & 0xFFFFFFFFL).int32(value >>> 32);
+        }
+
+        Output write(byte[] bytes) throws IOException {
+          stream.write(bytes);
+          count += bytes.length;
+          return this;
+        }
+      }
+    }
+
+    /**
+     * Header compiler translating the public surface of a module into class files.
+     *
+     * <p>Sources are parsed, all method and constructor bodies are replaced by {@code throw null;}
+     * while explicit {@code this(...)} and {@code super(...)} calls are kept, and the stripped
+     * sources are compiled. Header classes suffice to compile dependent modules, never to run them.
+     */
+    final class Headers {
+
+      /**
+       * Compile headers of a single module.
+       *
+       * <p>Arguments are {@code -d <directory>}, an optional {@code --module-path <path>}, and the
+       * source directories of the module, including the one containing its declaration.
+       */
+      static void compile(List<String> arguments) throws Exception {
+        var options = new ArrayList<>(List.of("-proc:none", "-implicit:none", "-nowarn"));
+        var directories = new ArrayList<Path>();
+        var iterator = arguments.iterator();
+        while (iterator.hasNext()) {
+          var argument = iterator.next();
+          if (argument.equals("-d") || argument.equals("--module-path")) {
+            options.add(argument);
+            options.add(iterator.next());
+          } else directories.add(Path.of(argument));
+        }
+        var files = new ArrayList<Path>();
+        for (var directory : directories) {
+          if (Files.notExists(directory)) continue;
+          try (var stream = Files.walk(directory)) {
+            stream.filter(path -> path.toString().endsWith(".java")).forEach(files::add);
+          }
+        }
+        var javac = javax.tools.ToolProvider.getSystemJavaCompiler();
+        try (var manager = javac.getStandardFileManager(null, null, null)) {
+          var units = manager.getJavaFileObjectsFromPaths(files);
+          var parser = (JavacTask) javac.getTask(null, manager, null, null, null, units);
+          var stripped = new ArrayList<JavaFileObject>();
+          for (var unit : parser.parse()) stripped.add(strip(parser, unit));
+          var out = new StringWriter();
+          if (!javac.getTask(out, manager, null, options, null, stripped).call()) {
+            throw new IllegalStateException("Compiling headers failed:\n" + out);
+          }
+        }
+      }
+
+      /** Return the source of the given compilation unit with all method bodies stripped. */
+      static JavaFileObject strip(JavacTask task, CompilationUnitTree unit) throws IOException {
+        var positions = Trees.instance(task).getSourcePositions();
+        var bodies = new ArrayList<long[]>();
+        new TreeScanner<Void, Void>() {
+          @Override
+          public Void visitMethod(MethodTree method, Void __) {
+            var body = method.getBody();
+            if (body == null) return null;
+            var start = positions.getStartPosition(unit, body) + 1;
+            var statements = body.getStatements();
+            if (!statements.isEmpty() && isConstructorCall(statements.get(0))) {
+              start = positions.getEndPosition(unit, statements.get(0));
+            }
+            bodies.add(new long[] {start, positions.getEndPosition(unit, body) - 1});
+            return null;
+          }
+        }.scan(unit, null);
+        var source = unit.getSourceFile();
+        var text = new StringBuilder(source.getCharContent(true));
+        for (int i = bodies.size() - 1; i >= 0; i--) {
+          text.replace((int) bodies.get(i)[0], (int) bodies.get(i)[1], " throw null; ");
+        }
+        return new SimpleJavaFileObject(source.toUri(), JavaFileObject.Kind.SOURCE) {
+          @Override
+          public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+          }
+        };
+      }
+
+      private static boolean isConstructorCall(StatementTree statement) {
+        if (!(statement instanceof ExpressionStatementTree)) return false;
+        var expression = ((ExpressionStatementTree) statement).getExpression();
+        if (!(expression instanceof MethodInvocationTree)) return false;
+        var name = ((MethodInvocationTree) expression).getMethodSelect().toString();
+        return name.equals("this") || name.equals("super") || name.endsWith(".super");
+      }
+    }
+
+    /**
+     * Lookup table of tools by name.
+     *
+     * <p>Registered tools and tool providers are found without searching. Other names are resolved
+     * via {@link ToolProvider#findFirst(String)} on their first lookup, the result is remembered
+     * for the lifetime of this registry, including a miss. Each resolution is recorded and shows up
+     * in the trace of a run.
+     */
+    final class Registry {
+
+      /** Return a new registry containing all built-in tools. */
+      public static Registry ofDefaults() {
+        var registry = new Registry();
+        for (var tool : Default.values()) registry.register(tool.name(), tool);
+        return registry;
+      }
+
+      private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+      private final Queue<Entry> resolved = new ConcurrentLinkedQueue<>();
 
-      static /*record*/ Call of(String name, String... args) {
-        return new Call() {
+      /** Register the given tool provider under its name. */
+      public Registry register(ToolProvider provider) {
+        entries.put(provider.name(), new Entry(provider.name(), provider, null));
+        return this;
+      }
 
-          private final String $ = name + (args.length == 0 ? "" : " " + String.join(" ", args));
+      /** Register the given tool implemented by this program under the specified name. */
+      public Registry register(String name, Tool<?> tool) {
+        entries.put(name, new Entry(name, null, tool));
+        return this;
+      }
 
-          @Override
-          public String toString() {
-            return $;
-          }
+      /** Return the entry of the given name, resolving a tool provider on the first lookup. */
+      public Entry lookup(String name) {
+        return entries.computeIfAbsent(name, this::resolve);
+      }
 
-          @Override
-          public String name() {
-            return name;
-          }
+      /** Return all entries resolved by searching for a tool provider, in order of resolution. */
+      public List<Entry> resolved() {
+        return List.copyOf(resolved);
+      }
 
-          @Override
-          public List<String> args() {
-            return List.of(args);
-          }
-        };
+      private Entry resolve(String name) {
+        var start = System.nanoTime();
+        var provider = ToolProvider.findFirst(name).orElse(null);
+        var entry = new Entry(name, provider, null);
+        entry.thread = Thread.currentThread();
+        entry.start = start;
+        entry.end = System.nanoTime();
+        resolved.add(entry);
+        return entry;
       }
 
-      class Builder {
+      /** A named tool provider, a tool implemented by this program, or neither if not found. */
+      public static final class Entry {
 
         private final String name;
-        private final List<Object> args;
+        private final ToolProvider provider;
+        private final Tool<?> tool;
+        private Thread thread;
+        private long start;
+        private long end;
 
-        Builder(String name, Object... initials) {
+        private Entry(String name, ToolProvider provider, Tool<?> tool) {
           this.name = name;
-          this.args = new ArrayList<>();
-          for (var initial : initials) add(initial);
+          this.provider = provider;
+          this.tool = tool;
         }
 
-        public Call build() {
-          return Call.of(name, args.stream().map(Object::toString).toArray(String[]::new));
+        public String name() {
+          return name;
         }
 
-        public Builder add(Object arg) {
-          args.add(arg);
-          return this;
+        public Optional<ToolProvider> provider() {
+          return Optional.ofNullable(provider);
         }
 
-        public Builder add(String key, Object value) {
-          return add(key).add(value);
+        public Optional<Tool<?>> tool() {
+          return Optional.ofNullable(tool);
         }
 
-        public Builder add(boolean iff, Object arg) {
-          if (iff) add(arg);
-          return this;
+        /** Return {@code true} if this entry denotes a tool implemented by this program. */
+        public boolean isBuiltIn() {
+          return tool != null;
         }
+      }
+    }
 
-        public Builder add(boolean iff, String key, Object value) {
-          if (iff) add(key, value);
-          return this;
+    /** A directed acyclic graph of all tool calls nested in a plan. */
+    final class Graph {
+
+      /** Create the graph of the given call, a plan is flattened into its nested calls. */
+      public static Graph of(Call root) {
+        var nodes = new ArrayList<Node>();
+        collect(root, List.of(), List.of(), nodes);
+        for (int j = 0; j < nodes.size(); j++) {
+          var node = nodes.get(j);
+          for (int i = 0; i < j; i++) {
+            var predecessor = nodes.get(i);
+            if (predecessor.precedes(node)) {
+              predecessor.successors.add(node);
+              node.predecessors.add(predecessor);
+            }
+          }
         }
+        return new Graph(nodes);
+      }
 
-        public <T> Builder forEach(Iterable<T> iterable, BiConsumer<Builder, T> visitor) {
-          iterable.forEach(item -> visitor.accept(this, item));
-          return this;
+      private static void collect(
+          Call call, List<Plan> plans, List<Integer> trail, List<Node> nodes) {
+        if (call instanceof Plan) {
+          var plan = (Plan) call;
+          var calls = plan.calls();
+          for (int index = 0; index < calls.size(); index++) {
+            var nextPlans = new ArrayList<>(plans);
+            nextPlans.add(plan);
+            var nextTrail = new ArrayList<>(trail);
+            nextTrail.add(index);
+            collect(calls.get(index), nextPlans, nextTrail, nodes);
+          }
+          return;
         }
+        nodes.add(new Node(nodes.size(), call, plans, trail));
       }
-    }
 
-    /** A list of tool calls. */
-    interface Plan extends Call {
-
-      boolean parallel();
+      private final List<Node> nodes;
 
-      List<Call> calls();
-
-      @Override
-      default String toMarkDown() {
-        return toString();
+      private Graph(List<Node> nodes) {
+        this.nodes = List.copyOf(nodes);
       }
 
-      static Plan of(Logger logger, Folder folder, Project project) {
-        return new Make.Planner(logger, folder, project).build();
+      /** Return all nodes in plan order, predecessors always come first. */
+      public List<Node> nodes() {
+        return nodes;
       }
 
-      static /*record*/ Plan of(String name, boolean parallel, Call... calls) {
-        return of(name, parallel, List.of(calls));
+      /** Return all nodes reading any of the given paths and all nodes depending on them. */
+      public List<Node> affected(Collection<Path> paths) {
+        var changes = Node.normalize(Set.copyOf(paths));
+        var marks = new boolean[nodes.size()];
+        var affected = new ArrayList<Node>();
+        for (var node : nodes) {
+          var reads = node.reads(changes);
+          if (!reads && node.predecessors.stream().noneMatch(other -> marks[other.index])) continue;
+          marks[node.index] = true;
+          affected.add(node);
+        }
+        return affected;
       }
 
-      static /*record*/ Plan of(String name, boolean parallel, List<Call> calls) {
-        return new Plan() {
+      /** A single tool call and its direct neighbours in the graph. */
+      public static final class Node {
+
+        private final int index;
+        private final Call call;
+        private final List<Plan> plans;
+        private final List<Integer> trail;
+        private final Set<Path> inputs;
+        private final Set<Path> outputs;
+        private final List<Node> predecessors = new ArrayList<>();
+        private final List<Node> successors = new ArrayList<>();
+
+        Node(int index, Call call, List<Plan> plans, List<Integer> trail) {
+          this.index = index;
+          this.call = call;
+          this.plans = plans;
+          this.trail = trail;
+          this.inputs = normalize(call.inputs());
+          this.outputs = normalize(call.outputs());
+        }
 
-          private final String $ = name + " {" + calls.size() + (parallel ? " + parallel}" : "}");
+        public int index() {
+          return index;
+        }
 
-          @Override
-          public String toString() {
-            return $;
-          }
+        public Call call() {
+          return call;
+        }
 
-          @Override
-          public String name() {
-            return name;
-          }
+        public List<Node> predecessors() {
+          return predecessors;
+        }
 
-          @Override
-          public List<String> args() {
-            return List.of();
-          }
+        public List<Node> successors() {
+          return successors;
+        }
 
-          @Override
-          public boolean parallel() {
-            return parallel;
-          }
+        /** Return {@code true} if this node's call reads any of the given absolute paths. */
+        boolean reads(Set<Path> paths) {
+          return overlaps(inputs, paths);
+        }
 
-          @Override
-          public List<Call> calls() {
-            return calls;
+        /** Return all plans enclosing this node's call, starting with the outermost plan. */
+        public List<Plan> plans() {
+          return plans;
+        }
+
+        /** Return {@code true} if the given later node must wait for this node to finish. */
+        boolean precedes(Node node) {
+          int depth = 0;
+          while (trail.get(depth).equals(node.trail.get(depth))) depth++;
+          if (plans.get(depth).parallel()) return false;
+          if (opaque() || node.opaque()) return true;
+          return overlaps(outputs, node.inputs)
+              || overlaps(outputs, node.outputs)
+              || overlaps(inputs, node.outputs);
+        }
+
+        private boolean opaque() {
+          return inputs.isEmpty() && outputs.isEmpty();
+        }
+
+        private static boolean overlaps(Set<Path> paths, Set<Path> others) {
+          for (var path : paths) {
+            for (var other : others) {
+              if (path.startsWith(other) || other.startsWith(path)) return true;
+            }
           }
-        };
+          return false;
+        }
+
+        private static Set<Path> normalize(Set<Path> paths) {
+          var set = new LinkedHashSet<Path>();
+          for (var path : paths) set.add(path.toAbsolutePath().normalize());
+          return set;
+        }
+
+        @Override
+        public String toString() {
+          return index + ": " + call;
+        }
       }
     }
   }
@@ -491,12 +3135,14 @@ public class Make {
     private final Version version;
     private final Layout layout;
     private final List<Realm> realms;
+    private final SourceIndex index;
 
-    Project(String name, Version version, Layout layout, List<Realm> realms) {
+    Project(String name, Version version, Layout layout, List<Realm> realms, SourceIndex index) {
       this.name = name;
       this.version = version;
       this.layout = layout;
       this.realms = List.copyOf(realms);
+      this.index = index;
     }
 
     public String name() {
@@ -515,31 +3161,38 @@ public class Make {
       return realms;
     }
 
+    /** Return the index of the source tree this project was discovered from, if any. */
+    public Optional<SourceIndex> index() {
+      return Optional.ofNullable(index);
+    }
+
     public static class Builder {
 
       private String name = "project";
       private String version = "1-ea";
       private Layout layout = Layout.DEFAULT;
       private List<Realm> realms = new ArrayList<>();
+      private SourceIndex index = null;
 
       public static Builder of(Logger logger, Folder folder) {
         var builder = new Builder();
         var absolute = folder.base().toAbsolutePath();
         logger.log(Level.TRACE, "Parsing directory '%s' for project properties.", absolute);
         Optional.ofNullable(absolute.getFileName()).map(Path::toString).ifPresent(builder::setName);
-        var layout = Layout.valueOf(folder.src()).orElse(Layout.DEFAULT);
-        builder.setLayout(layout);
+        var index = SourceIndex.of(folder.src(), folder.out("source-index.txt"));
+        var layout = Layout.valueOf(index).orElse(Layout.DEFAULT);
+        builder.setLayout(layout).setIndex(index);
         switch (layout) {
           case DEFAULT:
-            var main = Realm.Builder.of(logger, "main", Path.of("main"), folder, layout).build();
+            var main = Realm.Builder.of(logger, "main", Path.of("main"), index, layout).build();
             var test =
-                Realm.Builder.of(logger, "test", Path.of("test"), folder, layout)
+                Realm.Builder.of(logger, "test", Path.of("test"), index, layout)
                     .setRealms(List.of(main))
                     .build();
             builder.setRealms(List.of(main, test));
             break;
           case JIGSAW:
-            var realm = Realm.Builder.of(logger, "default", Path.of("."), folder, layout).build();
+            var realm = Realm.Builder.of(logger, "default", Path.of("."), index, layout).build();
             builder.setRealms(List.of(realm));
             break;
         }
@@ -547,7 +3200,7 @@ public class Make {
       }
 
       public Project build() {
-        return new Project(name, Version.parse(version), layout, realms);
+        return new Project(name, Version.parse(version), layout, realms, index);
       }
 
       public Builder setName(String name) {
@@ -569,6 +3222,133 @@ public class Make {
         this.realms = realms;
         return this;
       }
+
+      public Builder setIndex(SourceIndex index) {
+        this.index = index;
+        return this;
+      }
+    }
+
+    /**
+     * Index of directories and module declarations of a source tree, built by a single walk.
+     *
+     * <p>The walk stops at depth {@value #DEPTH}: module declarations are found down to that depth,
+     * directories above it are recorded with their modification time. A persisted index is reused
+     * as long as the modification time of every recorded directory, including the root directory
+     * itself, is unchanged. An index of a missing root directory is never current.
+     */
+    public static final class SourceIndex {
+
+      static final int DEPTH = 5;
+
+      /** Load the index persisted in the given file if it is still valid, else walk the tree. */
+      public static SourceIndex of(Path root, Path file) {
+        try {
+          var loaded = load(root, file);
+          if (loaded.isPresent()) return loaded.get();
+          var index = of(root);
+          if (Files.isDirectory(file.getParent())) index.store(file);
+          return index;
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+
+      /** Walk the given tree and create a new index. */
+      public static SourceIndex of(Path root) {
+        var directories = new TreeMap<Path, Long>();
+        var declarations = new ArrayList<Path>();
+        if (Files.notExists(root)) return new SourceIndex(root, directories, declarations);
+        var event = new Events.LayoutScan();
+        event.begin();
+        try {
+          var options = EnumSet.noneOf(FileVisitOption.class);
+          Files.walkFileTree(
+              root,
+              options,
+              DEPTH,
+              new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                  directories.put(root.relativize(dir), attrs.lastModifiedTime().toMillis());
+                  return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                  if (file.endsWith("module-info.java")) declarations.add(root.relativize(file));
+                  return FileVisitResult.CONTINUE;
+                }
+              });
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+        event.commit("scan", root, null, null, declarations.size());
+        return new SourceIndex(root, directories, declarations);
+      }
+
+      private static Optional<SourceIndex> load(Path root, Path file) throws Exception {
+        if (Files.notExists(file)) return Optional.empty();
+        var directories = new TreeMap<Path, Long>();
+        var declarations = new ArrayList<Path>();
+        for (var line : Files.readAllLines(file)) {
+          var separator = line.indexOf(' ');
+          var path = Path.of(line.substring(separator + 1));
+          if (line.startsWith("m ")) {
+            declarations.add(path);
+            continue;
+          }
+          directories.put(path, Long.parseLong(line.substring(0, separator)));
+        }
+        var index = new SourceIndex(root, directories, declarations);
+        return index.isCurrent() ? Optional.of(index) : Optional.empty();
+      }
+
+      private final Path root;
+      private final Map<Path, Long> directories;
+      private final List<Path> declarations;
+
+      SourceIndex(Path root, Map<Path, Long> directories, List<Path> declarations) {
+        this.root = root;
+        this.directories = directories;
+        this.declarations = List.copyOf(declarations);
+      }
+
+      public Path root() {
+        return root;
+      }
+
+      /** Return paths of all module declarations relative to the root directory. */
+      public List<Path> declarations() {
+        return declarations;
+      }
+
+      /** Return {@code true} if no recorded directory was modified since indexing. */
+      public boolean isCurrent() {
+        if (!directories.containsKey(Path.of(""))) return false; // root was missing
+        for (var entry : directories.entrySet()) {
+          var directory = root.resolve(entry.getKey());
+          try {
+            if (Files.getLastModifiedTime(directory).toMillis() != entry.getValue()) return false;
+          } catch (IOException e) {
+            return false;
+          }
+        }
+        return true;
+      }
+
+      /** Return {@code true} if the given path relative to the root denotes a directory. */
+      public boolean isDirectory(Path path) {
+        if (path.getNameCount() >= DEPTH) return Files.isDirectory(root.resolve(path));
+        return directories.containsKey(path);
+      }
+
+      void store(Path file) throws Exception {
+        var lines = new ArrayList<String>();
+        directories.forEach((path, time) -> lines.add(time + " " + path));
+        declarations.forEach(path -> lines.add("m " + path));
+        Files.write(file, lines);
+      }
     }
 
     /** Module declaration information. */
@@ -595,6 +3375,213 @@ public class Make {
       }
     }
 
+    /** Module declaration parser reading {@code module-info.java} files without javac. */
+    public static final class Parser {
+
+      private static final Map<Path, Parsed> CACHE = new ConcurrentHashMap<>();
+
+      /** Parsed descriptor with the modification time and size of its file. */
+      private static final class Parsed {
+        private final FileTime time;
+        private final long size;
+        private final ModuleDescriptor descriptor;
+
+        Parsed(BasicFileAttributes attributes, ModuleDescriptor descriptor) {
+          this.time = attributes.lastModifiedTime();
+          this.size = attributes.size();
+          this.descriptor = descriptor;
+        }
+
+        boolean matches(BasicFileAttributes attributes) {
+          return time.equals(attributes.lastModifiedTime()) && size == attributes.size();
+        }
+      }
+
+      /** Return descriptor of the given file, re-parsing it only if it was modified. */
+      public static ModuleDescriptor describe(Path file) {
+        try {
+          var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+          var key = file.toAbsolutePath().normalize();
+          var parsed = CACHE.get(key);
+          if (parsed != null && parsed.matches(attributes)) return parsed.descriptor;
+          var descriptor = parse(Files.readString(file));
+          CACHE.put(key, new Parsed(attributes, descriptor));
+          return descriptor;
+        } catch (Exception e) {
+          throw new RuntimeException("Parsing " + file + " failed: " + e.getMessage(), e);
+        }
+      }
+
+      /** Parse the given source of a module compilation unit. */
+      public static ModuleDescriptor parse(String source) {
+        return new Parser(source).parse();
+      }
+
+      private final String source;
+      private final Map<String, String> imports = new HashMap<>();
+      private int index;
+
+      private Parser(String source) {
+        this.source = source;
+        this.index = 0;
+      }
+
+      private ModuleDescriptor parse() {
+        var token = next();
+        while (token.equals("import")) {
+          var name = next();
+          if (name.equals("static")) name = next();
+          expect(";");
+          var simple = name.substring(name.lastIndexOf('.') + 1);
+          if (!simple.equals("*")) imports.put(simple, name);
+          token = next();
+        }
+        while (token.equals("@")) {
+          next(); // annotation name
+          skipArguments();
+          token = next();
+        }
+        var open = token.equals("open");
+        if (open) token = next();
+        if (!token.equals("module")) throw error("expected 'module' but got '" + token + "'");
+        var name = next();
+        var builder =
+            open ? ModuleDescriptor.newOpenModule(name) : ModuleDescriptor.newModule(name);
+        expect("{");
+        for (var directive = next(); !directive.equals("}"); directive = next()) {
+          switch (directive) {
+            case "requires":
+              var modifiers = new HashSet<ModuleDescriptor.Requires.Modifier>();
+              var module = next();
+              for (var last = next(); !last.equals(";"); last = next()) {
+                modifiers.add(ModuleDescriptor.Requires.Modifier.valueOf(module.toUpperCase()));
+                module = last;
+              }
+              builder.requires(modifiers, module);
+              break;
+            case "exports":
+              var exports = next();
+              var exportsTargets = targets();
+              if (exportsTargets.isEmpty()) builder.exports(exports);
+              else builder.exports(Set.of(), exports, exportsTargets);
+              break;
+            case "opens":
+              var opens = next();
+              var opensTargets = targets();
+              if (opensTargets.isEmpty()) builder.opens(opens);
+              else builder.opens(Set.of(), opens, opensTargets);
+              break;
+            case "uses":
+              var service = resolve(next());
+              expect(";");
+              if (service.indexOf('.') > 0) builder.uses(service);
+              break;
+            case "provides":
+              var provided = resolve(next());
+              expect("with");
+              var providers = new ArrayList<String>();
+              providers.add(resolve(next()));
+              for (var separator = next(); separator.equals(","); separator = next()) {
+                providers.add(resolve(next()));
+              }
+              var qualified = providers.stream().allMatch(provider -> provider.indexOf('.') > 0);
+              if (provided.indexOf('.') > 0 && qualified) builder.provides(provided, providers);
+              break;
+            default:
+              throw error("unexpected directive '" + directive + "'");
+          }
+        }
+        return builder.build();
+      }
+
+      /** Parse optional {@code to} clause and the terminating semicolon. */
+      private Set<String> targets() {
+        var token = next();
+        if (token.equals(";")) return Set.of();
+        if (!token.equals("to")) throw error("expected 'to' or ';' but got '" + token + "'");
+        var targets = new HashSet<String>();
+        targets.add(next());
+        for (token = next(); token.equals(","); token = next()) targets.add(next());
+        if (!token.equals(";")) throw error("expected ';' but got '" + token + "'");
+        return targets;
+      }
+
+      private String resolve(String name) {
+        var dot = name.indexOf('.');
+        var head = dot < 0 ? name : name.substring(0, dot);
+        var imported = imports.get(head);
+        if (imported == null) return name;
+        return dot < 0 ? imported : imported + name.substring(dot);
+      }
+
+      private void expect(String expected) {
+        var token = next();
+        if (token.equals(expected)) return;
+        throw error("expected '" + expected + "' but got '" + token + "'");
+      }
+
+      /** Return next identifier, qualified name, or symbol skipping whitespace and comments. */
+      private String next() {
+        skipWhitespaceAndComments();
+        if (index >= source.length()) throw error("unexpected end of input");
+        var start = index;
+        var c = source.charAt(index++);
+        if (!Character.isJavaIdentifierStart(c)) return String.valueOf(c);
+        while (index < source.length()) {
+          c = source.charAt(index);
+          if (!Character.isJavaIdentifierPart(c) && c != '.' && c != '*') break;
+          index++;
+        }
+        return source.substring(start, index);
+      }
+
+      private void skipWhitespaceAndComments() {
+        while (index < source.length()) {
+          var c = source.charAt(index);
+          if (Character.isWhitespace(c)) {
+            index++;
+          } else if (source.startsWith("//", index)) {
+            var end = source.indexOf('\n', index);
+            index = end < 0 ? source.length() : end + 1;
+          } else if (source.startsWith("/*", index)) {
+            var end = source.indexOf("*/", index + 2);
+            if (end < 0) throw error("unterminated comment");
+            index = end + 2;
+          } else {
+            return;
+          }
+        }
+      }
+
+      /** Skip parenthesized annotation arguments, if present. */
+      private void skipArguments() {
+        skipWhitespaceAndComments();
+        if (index >= source.length() || source.charAt(index) != '(') return;
+        var depth = 0;
+        while (index < source.length()) {
+          var c = source.charAt(index++);
+          if (c == '"' || c == '\'') {
+            while (index < source.length() && source.charAt(index) != c) {
+              if (source.charAt(index) == '\\') index++;
+              index++;
+            }
+            index++;
+          } else if (c == '(') {
+            depth++;
+          } else if (c == ')' && --depth == 0) {
+            return;
+          }
+        }
+        throw error("unterminated annotation");
+      }
+
+      private IllegalArgumentException error(String message) {
+        var line = 1;
+        for (int i = 0; i < index && i < source.length(); i++) if (source.charAt(i) == '\n') line++;
+        return new IllegalArgumentException("line " + line + ": " + message);
+      }
+    }
+
     /** Module source directory tree layout. */
     public enum Layout {
       /**
@@ -671,40 +3658,47 @@ public class Make {
       }
 
       public Set<Info> find(Folder folder, String realm) {
-        var root = folder.src();
-        try (var stream = Files.find(root, 5, (path, __) -> path.endsWith("module-info.java"))) {
-          switch (this) {
-            case DEFAULT:
-              return stream
-                  .map(root::relativize)
-                  .filter(path -> path.getName(1).toString().equals(realm))
-                  .map(
-                      path ->
-                          new Info(
-                              path, ModuleDescriptor.newModule(path.getName(0).toString()).build()))
-                  .collect(Collectors.toSet());
-            case JIGSAW:
-              return stream
-                  .map(root::relativize)
-                  .map(
-                      path ->
-                          new Info(
-                              path, ModuleDescriptor.newModule(path.getName(0).toString()).build()))
-                  .collect(Collectors.toSet());
-          }
-        } catch (Exception e) {
-          throw new RuntimeException(e);
+        return find(SourceIndex.of(folder.src()), realm);
+      }
+
+      public Set<Info> find(SourceIndex index, String realm) {
+        var event = new Events.LayoutScan();
+        event.begin();
+        var infos = infos(index, realm);
+        event.commit("find", index.root(), realm, name(), infos.size());
+        return infos;
+      }
+
+      private Set<Info> infos(SourceIndex index, String realm) {
+        var root = index.root();
+        var stream = index.declarations().stream();
+        switch (this) {
+          case DEFAULT:
+            return stream
+                .filter(path -> path.getName(1).toString().equals(realm))
+                .map(path -> new Info(path, Parser.describe(root.resolve(path))))
+                .collect(Collectors.toSet());
+          case JIGSAW:
+            return stream
+                .map(path -> new Info(path, Parser.describe(root.resolve(path))))
+                .collect(Collectors.toSet());
         }
         return Set.of();
       }
 
       /** Return modular layout constant of the specified root directory. */
       public static Optional<Layout> valueOf(Path root) {
-        try (var stream = Files.find(root, 5, (path, __) -> path.endsWith("module-info.java"))) {
-          return valueOf(stream.map(root::relativize));
-        } catch (Exception e) {
-          throw new RuntimeException(e);
-        }
+        return valueOf(SourceIndex.of(root));
+      }
+
+      /** Return modular layout constant of the indexed root directory. */
+      public static Optional<Layout> valueOf(SourceIndex index) {
+        var event = new Events.LayoutScan();
+        event.begin();
+        var layout = valueOf(index.declarations().stream());
+        var name = layout.map(Layout::name).orElse(null);
+        event.commit("valueOf", index.root(), null, name, index.declarations().size());
+        return layout;
       }
 
       /** Return modular layout constant matching all given paths. */
@@ -729,6 +3723,7 @@ public class Make {
       private final String name;
       private final Path path;
       private final List<String> modules;
+      private final List<ModuleDescriptor> descriptors;
       private final List<Path> moduleSourcePaths;
       private final List<Realm> dependencies;
 
@@ -736,11 +3731,13 @@ public class Make {
           String name,
           Path path,
           List<String> modules,
+          List<ModuleDescriptor> descriptors,
           List<Path> moduleSourcePaths,
           Realm... dependencies) {
         this.name = name;
         this.path = path;
         this.modules = List.copyOf(modules);
+        this.descriptors = List.copyOf(descriptors);
         this.moduleSourcePaths = List.copyOf(moduleSourcePaths);
         this.dependencies = List.of(dependencies);
       }
@@ -757,6 +3754,22 @@ public class Make {
         return modules;
       }
 
+      public List<ModuleDescriptor> descriptors() {
+        return descriptors;
+      }
+
+      /** Return names of modules of this realm that are directly required by the given module. */
+      public Set<String> requires(String module) {
+        var requires = new TreeSet<String>();
+        for (var descriptor : descriptors()) {
+          if (!descriptor.name().equals(module)) continue;
+          for (var directive : descriptor.requires()) {
+            if (modules().contains(directive.name())) requires.add(directive.name());
+          }
+        }
+        return requires;
+      }
+
       public List<Path> moduleSourcePaths() {
         return moduleSourcePaths;
       }
@@ -785,29 +3798,38 @@ public class Make {
 
         public static Builder of(
             Logger logger, String realm, Path path, Folder folder, Layout layout) {
-          var src = folder.src();
+          return of(logger, realm, path, SourceIndex.of(folder.src()), layout);
+        }
+
+        public static Builder of(
+            Logger logger, String realm, Path path, SourceIndex index, Layout layout) {
+          var src = index.root();
           logger.log(Level.TRACE, "Parsing '%s' folder for %s realm assets: %s", src, realm, path);
-          var info = layout.find(folder, realm);
+          var info = layout.find(index, realm);
           return new Builder(realm)
               .setPath(path)
-              .setModules(info.stream().map(Info::name).collect(Collectors.toList()))
+              .setModules(info.stream().map(Info::name).sorted().collect(Collectors.toList()))
+              .setDescriptors(info.stream().map(Info::descriptor).collect(Collectors.toList()))
               .setModuleSourcePaths(layout.paths(realm));
         }
 
         private final String name;
         private Path path;
         private List<String> modules;
+        private List<ModuleDescriptor> descriptors;
         private List<Path> moduleSourcePaths;
         private List<Realm> realms;
 
         public Realm build() {
-          return new Realm(name, path, modules, moduleSourcePaths, realms.toArray(Realm[]::new));
+          var dependencies = realms.toArray(Realm[]::new);
+          return new Realm(name, path, modules, descriptors, moduleSourcePaths, dependencies);
         }
 
         public Builder(String name) {
           this.name = name;
           this.setPath(Path.of(name.isBlank() ? "." : name))
               .setModules(List.of())
+              .setDescriptors(List.of())
               .setModuleSourcePaths(Layout.DEFAULT.paths(name))
               .setRealms(List.of());
         }
@@ -822,6 +3844,11 @@ public class Make {
           return this;
         }
 
+        public Builder setDescriptors(List<ModuleDescriptor> descriptors) {
+          this.descriptors = descriptors;
+          return this;
+        }
+
         public Builder setModuleSourcePaths(List<Path> moduleSourcePaths) {
           this.moduleSourcePaths = moduleSourcePaths;
           return this;
@@ -873,16 +3900,192 @@ public class Make {
       }
       var modulePath = realm.modulePath(folder);
       var classes = folder.out("classes", realm.path().toString());
+      var javac =
+          Boolean.getBoolean("compile-per-module")
+              ? Boolean.getBoolean("compile-headers")
+                  ? headers(realm, waves(realm))
+                  : javac(realm, waves(realm))
+              : Tool.Call.newCall("javac")
+                  .add("--module", String.join(",", realm.modules()))
+                  .add("--module-source-path", realm.moduleSourcePath(folder))
+                  .add(!modulePath.isEmpty(), "--module-path", modulePath)
+                  .add("-d", classes)
+                  .forEach(sources(realm), Tool.Call.Builder::input)
+                  .forEach(modules(realm), Tool.Call.Builder::input)
+                  .output(classes)
+                  .build();
+      var name = String.format("Compile %s realm", realm.name());
+      return Tool.Plan.of(name, false, javac, jar(realm));
+    }
+
+    /** Plan compilation of each module individually, wave after wave. */
+    public Tool.Plan javac(Project.Realm realm, List<List<String>> waves) {
+      var plans = new ArrayList<Tool.Call>();
+      for (var wave : waves) {
+        var calls = wave.stream().map(module -> javac(realm, module));
+        var name = String.format("Compile wave %d of %s realm", plans.size() + 1, realm.name());
+        plans.add(Tool.Plan.of(name, true, calls.collect(Collectors.toList())));
+      }
+      var name = String.format("Compile %s modules in %d waves", realm.name(), waves.size());
+      return Tool.Plan.of(name, false, plans);
+    }
+
+    /**
+     * Plan compilation of all module headers followed by full compilation of each module.
+     *
+     * <p>A module is compiled as soon as the headers of its required modules are compiled, without
+     * waiting for the full compilation of them.
+     */
+    public Tool.Plan headers(Project.Realm realm, List<List<String>> waves) {
+      var headers = folder.out("headers", realm.name());
+      var calls = new ArrayList<Tool.Call>();
+      var javacs = new ArrayList<Tool.Call>();
+      for (var wave : waves) {
+        for (var module : wave) {
+          calls.add(header(realm, module));
+          javacs.add(javac(realm, module, headers));
+        }
+      }
+      var name = String.format("Compile %s modules against headers", realm.name());
       return Tool.Plan.of(
-          String.format("Compile %s realm", realm.name()),
+          name,
           false,
-          Tool.Call.newCall("javac")
-              .add("--module", String.join(",", realm.modules()))
-              .add("--module-source-path", realm.moduleSourcePath(folder))
-              .add(!modulePath.isEmpty(), "--module-path", modulePath)
-              .add("-d", classes)
-              .build(),
-          jar(realm));
+          Tool.Plan.of(String.format("Compile %s headers", realm.name()), false, calls),
+          Tool.Plan.of(String.format("Compile %s modules", realm.name()), true, javacs));
+    }
+
+    /** Plan header compilation of a single module against headers of its required modules. */
+    public Tool.Call header(Project.Realm realm, String module) {
+      var headers = folder.out("headers", realm.name());
+      var requires = requires(realm, module, headers);
+      var modulePath = modulePath(realm, requires);
+      return Tool.Default.COMPILE_HEADERS
+          .newCall()
+          .add("-d", headers.resolve(module))
+          .add(!modulePath.isEmpty(), "--module-path", modulePath)
+          .forEach(project().layout().paths(realm.name(), module), this::header)
+          .forEach(requires, Tool.Call.Builder::api)
+          .forEach(modules(realm), Tool.Call.Builder::input)
+          .output(headers.resolve(module))
+          .build();
+    }
+
+    private void header(Tool.Call.Builder builder, Path source) {
+      var path = folder.src().resolve(source);
+      builder.add(path).input(path);
+    }
+
+    /** Plan compilation of a single module against the classes of its required modules. */
+    public Tool.Call javac(Project.Realm realm, String module) {
+      return javac(realm, module, folder.out("classes", realm.path().toString()));
+    }
+
+    /**
+     * Plan compilation of a single module against required modules in the given directory.
+     *
+     * <p>The module is compiled in single-module mode: only its own source files are passed to the
+     * compiler, required modules are read from the module path and never from their sources.
+     */
+    public Tool.Call javac(Project.Realm realm, String module, Path directory) {
+      var classes = folder.out("classes", realm.path().toString());
+      var requires = requires(realm, module, directory);
+      var modulePath = modulePath(realm, requires);
+      var sources = new ArrayList<Path>();
+      for (var path : project().layout().paths(realm.name(), module)) {
+        sources.add(folder.src().resolve(path));
+      }
+      return Tool.Call.newCall("javac")
+          .add(!modulePath.isEmpty(), "--module-path", modulePath)
+          .add("-implicit:none")
+          .add("-d", classes.resolve(module))
+          .forEach(files(sources), Tool.Call.Builder::add)
+          .forEach(sources, Tool.Call.Builder::input)
+          .forEach(requires, Tool.Call.Builder::api)
+          .forEach(modules(realm), Tool.Call.Builder::input)
+          .output(classes.resolve(module))
+          .build();
+    }
+
+    /** Return all Java source files in the given directories. */
+    List<Path> files(List<Path> directories) {
+      var files = new ArrayList<Path>();
+      for (var directory : directories) {
+        if (!Files.isDirectory(directory)) continue;
+        try (var stream = Files.walk(directory)) {
+          stream.filter(path -> path.toString().endsWith(".java")).sorted().forEach(files::add);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+      return files;
+    }
+
+    private List<Path> requires(Project.Realm realm, String module, Path directory) {
+      var requires = new ArrayList<Path>();
+      for (var required : closure(realm, module)) requires.add(directory.resolve(required));
+      return requires;
+    }
+
+    private String modulePath(Project.Realm realm, List<Path> requires) {
+      var paths = requires.stream().map(Path::toString);
+      return Stream.concat(paths, Stream.of(realm.modulePath(folder)))
+          .filter(path -> !path.isEmpty())
+          .collect(Collectors.joining(File.pathSeparator));
+    }
+
+    /** Group modules of the realm into waves, a module only requires modules of earlier waves. */
+    public List<List<String>> waves(Project.Realm realm) {
+      var waves = new ArrayList<List<String>>();
+      var done = new TreeSet<String>();
+      while (done.size() < realm.modules().size()) {
+        var wave =
+            realm.modules().stream()
+                .filter(module -> !done.contains(module))
+                .filter(module -> done.containsAll(realm.requires(module)))
+                .collect(Collectors.toList());
+        if (wave.isEmpty()) {
+          var cycle = new ArrayList<>(realm.modules());
+          cycle.removeAll(done);
+          throw new IllegalStateException("Cyclic module dependencies: " + cycle);
+        }
+        waves.add(wave);
+        done.addAll(wave);
+      }
+      return waves;
+    }
+
+    /** Return all modules of the realm that the given module requires directly or indirectly. */
+    Set<String> closure(Project.Realm realm, String module) {
+      var closure = new TreeSet<String>();
+      var pending = new ArrayList<>(realm.requires(module));
+      while (!pending.isEmpty()) {
+        var required = pending.remove(pending.size() - 1);
+        if (closure.add(required)) pending.addAll(realm.requires(required));
+      }
+      return closure;
+    }
+
+    /** Return {@code true} if the given path relative to the source folder is a directory. */
+    boolean isDirectory(Path path) {
+      var index = project().index();
+      if (index.isPresent()) return index.get().isDirectory(path);
+      return Files.isDirectory(folder().src().resolve(path));
+    }
+
+    /** Return the source directories of all modules of the given realm. */
+    List<Path> sources(Project.Realm realm) {
+      var layout = project().layout();
+      return realm.modules().stream()
+          .flatMap(module -> layout.paths(realm.name(), module).stream())
+          .map(folder.src()::resolve)
+          .collect(Collectors.toList());
+    }
+
+    /** Return the directories of modular jar files the given realm depends on. */
+    List<Path> modules(Project.Realm realm) {
+      return realm.dependencies().stream()
+          .map(dependency -> folder.out("modules", dependency.name()))
+          .collect(Collectors.toList());
     }
 
     public Tool.Plan jar(Project.Realm realm) {
@@ -894,30 +4097,29 @@ public class Make {
       var realmPath = realm.path().toString();
       var modules = folder.out("modules", realmPath);
       var sources = folder.out("sources", realmPath);
+      var indexes = folder.out("jars", realmPath);
       var calls = new ArrayList<Tool.Call>();
       for (var module : realm.modules()) {
         var file = module + "-" + project().version();
         var classes = folder.out("classes", realmPath, module);
         calls.add(
-            Tool.Call.newCall("jar")
-                .add("--create")
+            Tool.Default.JAR.newCall()
                 .add("--file", modules.resolve(file + ".jar"))
-                .add(logger().verbose(), "--verbose")
+                .add("--index", indexes.resolve(file + ".jar.index"))
                 .add("-C", classes)
-                .add(".")
-                .build());
-        calls.add(
-            Tool.Call.newCall("jar")
-                .add("--create")
+                .input(classes)
+                .output(modules.resolve(file + ".jar"))
                 .add("--file", sources.resolve(file + "-sources.jar"))
-                .add(logger().verbose(), "--verbose")
                 .add("--no-manifest")
+                .add("--index", indexes.resolve(file + "-sources.jar.index"))
                 .forEach(
                     layout.paths(realm.name, module),
                     (call, path) -> {
+                      if (!isDirectory(path)) return;
                       var content = folder.src().resolve(path);
-                      if (Files.isDirectory(content)) call.add("-C", content).add(".");
+                      call.add("-C", content).input(content);
                     })
+                .output(sources.resolve(file + "-sources.jar"))
                 .build());
       }
       return Tool.Plan.of(
@@ -950,6 +4152,9 @@ public class Make {
               .add(!modulePath.isEmpty(), "--module-path", modulePath)
               .add("-d", javadoc)
               .add(!logger().verbose(), "-quiet")
+              .forEach(sources(realm), Tool.Call.Builder::input)
+              .forEach(modules(realm), Tool.Call.Builder::input)
+              .output(javadoc)
               .build(),
           Tool.Call.newCall("jar")
               .add("--create")
@@ -958,9 +4163,17 @@ public class Make {
               .add("--no-manifest")
               .add("-C", javadoc)
               .add(".")
+              .input(javadoc)
+              .output(javadoc.getParent().resolve(file + "-javadoc.jar"))
               .build());
     }
 
+    /** Print version of the given tool, it only reads the runtime image. */
+    public Tool.Call version(String tool) {
+      var home = Path.of(System.getProperty("java.home"));
+      return Tool.Call.newCall(tool, "--version").input(home).build();
+    }
+
     /** Creates the build plan. */
     public Tool.Plan build() {
       return Tool.Plan.of(
@@ -970,9 +4183,9 @@ public class Make {
           Tool.Plan.of(
               "Print version of each provided tool",
               true,
-              Tool.Call.of("javac", "--version"),
-              Tool.Call.of("jar", "--version"),
-              Tool.Call.of("javadoc", "--version")),
+              version("javac"),
+              version("jar"),
+              version("javadoc")),
           Tool.Plan.of("Compile and generate API documentation", true, compile(), javadoc()),
           Tool.Default.WRITE_SUMMARY.args(folder().out("summary.md")));
     }
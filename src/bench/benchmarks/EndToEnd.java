@@ -0,0 +1,146 @@
+package benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * End-to-end build benchmark.
+ *
+ * <p>Generates projects of the configured shape in both layouts, builds each of them in a fresh
+ * JVM cold, warm, and after editing a single source file, and writes wall time, CPU time, and peak
+ * resident set size of every build into a JSON report.
+ *
+ * <p>Build options set in this JVM, like {@code -Dcompile-per-module=true} or {@code
+ * -Dparallelism=2}, are forwarded to the measured JVM: see {@code Make.Daemon.OPTIONS} for their
+ * names. Further options of the measured JVM, like heap settings, are passed via {@code
+ * --jvm-option}. All options of the measured JVM are recorded in the report.
+ *
+ * <pre>
+ * java -cp ... benchmarks.EndToEnd --modules 100 --fan-out 3 --fan-in 10 --classes 20 --tests 10
+ * java -Dcompile-headers=true -cp ... benchmarks.EndToEnd --jvm-option -Xmx1g
+ * </pre>
+ */
+public class EndToEnd {
+
+  public static void main(String... args) throws Exception {
+    var shape = new Projects.Shape();
+    var layouts = List.of("DEFAULT", "JIGSAW");
+    var report = Path.of("end-to-end.json");
+    var options = forwardedOptions();
+    var arguments = new ArrayList<>(Arrays.asList(args));
+    while (!arguments.isEmpty()) {
+      var option = arguments.remove(0);
+      var value = arguments.remove(0);
+      switch (option) {
+        case "--modules":
+          shape.setModules(Integer.parseInt(value));
+          break;
+        case "--fan-out":
+          shape.setFanOut(Integer.parseInt(value));
+          break;
+        case "--fan-in":
+          shape.setFanIn(Integer.parseInt(value));
+          break;
+        case "--classes":
+          shape.setClasses(Integer.parseInt(value));
+          break;
+        case "--tests":
+          shape.setTests(Integer.parseInt(value));
+          break;
+        case "--layouts":
+          layouts = List.of(value.split(","));
+          break;
+        case "--report":
+          report = Path.of(value);
+          break;
+        case "--jvm-option":
+          options.add(value);
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported option: " + option);
+      }
+    }
+
+    var results = new ArrayList<String>();
+    for (var layout : layouts) {
+      shape.setLayout(layout);
+      var root = Projects.generate(Files.createTempDirectory("make-java-end-to-end-"), shape);
+      try {
+        results.add(measure(root, shape, options, "cold"));
+        results.add(measure(root, shape, options, "warm"));
+        var file = Projects.source(root, layout, Projects.module(shape.modules() / 2));
+        Files.writeString(file, Files.readString(file) + "// edited\n");
+        results.add(measure(root, shape, options, "edit"));
+      } finally {
+        Projects.delete(root);
+      }
+    }
+    var json = "{\"results\":[\n" + String.join(",\n", results) + "\n]}\n";
+    Files.writeString(report, json);
+    System.out.print(json);
+  }
+
+  /**
+   * Return the build options set in this JVM as system property options of the measured JVM.
+   *
+   * <p>Types of the unnamed package can't be imported, the names of all build options are read
+   * reflectively from {@code Make.Daemon.OPTIONS}.
+   */
+  static List<String> forwardedOptions() throws ReflectiveOperationException {
+    var daemon = Class.forName("Make$Daemon", true, EndToEnd.class.getClassLoader());
+    var options = new ArrayList<String>();
+    for (var name : (List<?>) daemon.getField("OPTIONS").get(null)) {
+      var value = System.getProperty(name.toString());
+      if (value != null) options.add("-D" + name + "=" + value);
+    }
+    return options;
+  }
+
+  /** Build the project in a fresh JVM and return the measured values as a JSON object. */
+  static String measure(Path root, Projects.Shape shape, List<String> options, String scenario)
+      throws Exception {
+    var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    var classPath = // absolute, as the build runs in the project directory
+        Arrays.stream(System.getProperty("java.class.path").split(File.pathSeparator))
+            .map(entry -> Path.of(entry).toAbsolutePath().toString())
+            .collect(Collectors.joining(File.pathSeparator));
+    var log = root.resolve(scenario + ".log");
+    var builder = new ProcessBuilder(java);
+    builder.command().addAll(options);
+    builder.command().addAll(List.of("-cp", classPath, Measure.class.getName()));
+    builder.directory(root.toFile()).redirectErrorStream(true).redirectOutput(log.toFile());
+    var start = System.nanoTime();
+    var code = builder.start().waitFor();
+    var wall = (System.nanoTime() - start) / 1_000_000;
+    var cpu = -1L;
+    var peak = -1L;
+    for (var line : Files.readAllLines(log)) {
+      if (!line.startsWith(Measure.PREFIX)) continue;
+      var values = line.substring(Measure.PREFIX.length()).split(" ");
+      cpu = Long.parseLong(values[0]) / 1_000_000;
+      peak = Long.parseLong(values[1]);
+    }
+    var summary = "%s %s %s: %d ms wall, %d ms cpu, %d kB peak rss%n";
+    System.err.printf(summary, shape, options, scenario, wall, cpu, peak);
+    if (code != 0) {
+      Files.readAllLines(log).forEach(System.err::println);
+      throw new Error("Build failed with exit code " + code);
+    }
+    var jvmOptions =
+        options.stream().map(EndToEnd::quote).collect(Collectors.joining(",", "[", "]"));
+    return String.format(
+        "{\"shape\":%s,\"jvmOptions\":%s,\"scenario\":\"%s\",\"exitCode\":%d,"
+            + "\"wallMillis\":%d,\"cpuMillis\":%d,\"peakRssKiB\":%d}",
+        shape, jvmOptions, scenario, code, wall, cpu, peak);
+  }
+
+  /** Return the given string as a JSON string literal. */
+  static String quote(String string) {
+    return '"' + string.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+  }
+}
@@ -0,0 +1,171 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of project discovery, planning, and call construction.
+ *
+ * <p>JMH doesn't support benchmarks in the unnamed package and a named package can't refer to
+ * types of the unnamed package, therefore {@code Make} is accessed via method handles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MakeBenchmarks {
+
+  @Param({"10", "100", "1000"})
+  public int modules;
+
+  @Param({"DEFAULT", "JIGSAW"})
+  public String layout;
+
+  private Path root;
+  private Object logger;
+  private Object folder;
+  private Object project;
+  private List<Path> declarations;
+  private Object entry;
+  private Instant start;
+
+  private MethodHandle builderOf;
+  private MethodHandle builderBuild;
+  private MethodHandle layoutValueOf;
+  private MethodHandle newPlanner;
+  private MethodHandle plannerBuild;
+  private MethodHandle newCall;
+  private MethodHandle callAdd;
+  private MethodHandle callInput;
+  private MethodHandle callOutput;
+  private MethodHandle callBuild;
+  private MethodHandle entryToString;
+
+  @Setup
+  public void setup() throws Throwable {
+    var loader = MakeBenchmarks.class.getClassLoader();
+    var loggerType = Class.forName("Make$Logger", true, loader);
+    var entryType = Class.forName("Make$Logger$Entry", true, loader);
+    var folderType = Class.forName("Make$Folder", true, loader);
+    var projectType = Class.forName("Make$Project", true, loader);
+    var builderType = Class.forName("Make$Project$Builder", true, loader);
+    var layoutType = Class.forName("Make$Project$Layout", true, loader);
+    var plannerType = Class.forName("Make$Planner", true, loader);
+    var planType = Class.forName("Make$Tool$Plan", true, loader);
+    var callType = Class.forName("Make$Tool$Call", true, loader);
+    var callBuilderType = Class.forName("Make$Tool$Call$Builder", true, loader);
+
+    builderOf = find(builderType, "of", builderType, loggerType, folderType);
+    builderBuild = find(builderType, "build", projectType);
+    layoutValueOf = find(layoutType, "valueOf", Optional.class, Stream.class);
+    var type = MethodType.methodType(void.class, loggerType, folderType, projectType);
+    newPlanner = MethodHandles.publicLookup().findConstructor(plannerType, type);
+    plannerBuild = find(plannerType, "build", planType);
+    newCall = find(callType, "newCall", callBuilderType, String.class, Object[].class);
+    callAdd = find(callBuilderType, "add", callBuilderType, String.class, Object.class);
+    callInput = find(callBuilderType, "input", callBuilderType, Path.class);
+    callOutput = find(callBuilderType, "output", callBuilderType, Path.class);
+    callBuild = find(callBuilderType, "build", callType);
+    entryToString = find(entryType, "toString", String.class, Instant.class);
+
+    logger =
+        Proxy.newProxyInstance(
+            loader,
+            new Class<?>[] {loggerType},
+            (proxy, method, args) -> {
+              switch (method.getName()) {
+                case "log":
+                  return proxy;
+                case "isLoggable":
+                case "verbose":
+                  return false;
+                case "hashCode":
+                  return System.identityHashCode(proxy);
+                case "equals":
+                  return proxy == args[0];
+                default:
+                  return "QuietLogger";
+              }
+            });
+    root = Projects.generate(Files.createTempDirectory("make-java-bench-"), modules, layout);
+    folder = find(folderType, "of", folderType, Path.class).invoke(root);
+    project = discoverProject();
+    declarations =
+        Stream.iterate(0, index -> index + 1)
+            .limit(modules)
+            .map(index -> Projects.path(layout, Projects.module(index)).resolve("module-info.java"))
+            .collect(Collectors.toList());
+    start = Instant.now();
+    var of = find(entryType, "of", entryType, System.Logger.Level.class, String.class);
+    entry = of.invoke(System.Logger.Level.INFO, "Project " + root.getFileName());
+  }
+
+  /** Find a public static or instance method of the given type. */
+  private static MethodHandle find(Class<?> type, String name, Class<?> result, Class<?>... args)
+      throws Exception {
+    var lookup = MethodHandles.publicLookup();
+    var method = type.getMethod(name, args);
+    if (method.getReturnType() != result) throw new NoSuchMethodException(method.toString());
+    return lookup.unreflect(method);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    Projects.delete(root);
+  }
+
+  @Benchmark
+  public Object discoverProject() throws Throwable {
+    return builderBuild.invoke(builderOf.invoke(logger, folder));
+  }
+
+  @Benchmark
+  public Object detectLayout() throws Throwable {
+    return layoutValueOf.invoke(declarations.stream());
+  }
+
+  @Benchmark
+  public Object planBuild() throws Throwable {
+    return plannerBuild.invoke(newPlanner.invoke(logger, folder, project));
+  }
+
+  @Benchmark
+  public Object buildCall() throws Throwable {
+    var builder = newCall.invoke("javac", new Object[0]);
+    builder = callAdd.invoke(builder, "--module", "com.example.m0000");
+    builder = callAdd.invoke(builder, "--module-source-path", root.resolve("src"));
+    builder = callAdd.invoke(builder, "-d", root.resolve(".make-java/classes"));
+    builder = callInput.invoke(builder, root.resolve("src"));
+    builder = callOutput.invoke(builder, root.resolve(".make-java/classes"));
+    return callBuild.invoke(builder);
+  }
+
+  @Benchmark
+  public Object formatEntry() throws Throwable {
+    return entryToString.invoke(entry, start);
+  }
+}
@@ -0,0 +1,43 @@
+package benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Run the build program of the current working directory and print resource usage. */
+public class Measure {
+
+  /** Prefix of the line reporting process CPU time in nanoseconds and peak RSS in kB. */
+  static final String PREFIX = "measure: ";
+
+  public static void main(String... args) throws Throwable {
+    var build = Class.forName("Build").getMethod("main", String[].class);
+    build.setAccessible(true); // class Build is package-private
+    var code = 0;
+    try {
+      build.invoke(null, (Object) args);
+    } catch (InvocationTargetException e) {
+      e.getCause().printStackTrace();
+      code = 1;
+    }
+    var bean = ManagementFactory.getOperatingSystemMXBean();
+    var cpu = -1L;
+    if (bean instanceof com.sun.management.OperatingSystemMXBean) {
+      cpu = ((com.sun.management.OperatingSystemMXBean) bean).getProcessCpuTime();
+    }
+    System.out.println(PREFIX + cpu + " " + peak());
+    System.exit(code);
+  }
+
+  /** Return the peak resident set size in kB, or {@code -1} if unknown. */
+  static long peak() throws Exception {
+    var status = Path.of("/proc/self/status");
+    if (Files.notExists(status)) return -1;
+    for (var line : Files.readAllLines(status)) {
+      if (!line.startsWith("VmHWM:")) continue;
+      return Long.parseLong(line.replaceAll("[^0-9]", ""));
+    }
+    return -1;
+  }
+}
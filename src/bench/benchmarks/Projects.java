@@ -0,0 +1,172 @@
+package benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/** Generator of synthetic modular project trees. */
+public class Projects {
+
+  /** Generate a project with the given number of modules in the named layout. */
+  public static Path generate(Path root, int modules, String layout) throws Exception {
+    return generate(root, new Shape().setModules(modules).setLayout(layout));
+  }
+
+  /** Generate a project of the given shape. */
+  public static Path generate(Path root, Shape shape) throws Exception {
+    var fanIns = new int[shape.modules];
+    for (int index = 0; index < shape.modules; index++) {
+      var requires = new ArrayList<String>();
+      for (int other = index - 1; other >= 0 && requires.size() < shape.fanOut; other--) {
+        if (fanIns[other] >= shape.fanIn) continue;
+        fanIns[other]++;
+        requires.add(module(other));
+      }
+      var directory = root.resolve("src").resolve(path(shape.layout, "main", module(index)));
+      generate(directory, module(index), requires, shape.classes);
+    }
+    for (int index = 0; index < shape.tests; index++) {
+      var module = test(index);
+      var realm = shape.layout.equals("JIGSAW") ? "main" : "test";
+      var directory = root.resolve("src").resolve(path(shape.layout, realm, module));
+      var requires = List.of(module(index * shape.modules / shape.tests));
+      generate(directory, module, requires, shape.classes);
+    }
+    return root;
+  }
+
+  private static void generate(Path directory, String module, List<String> requires, int classes)
+      throws Exception {
+    var lines = new ArrayList<String>();
+    lines.add("module " + module + " {");
+    lines.add("  exports " + module + ";");
+    requires.forEach(name -> lines.add("  requires " + name + ";"));
+    lines.add("}");
+    Files.createDirectories(directory);
+    Files.write(directory.resolve("module-info.java"), lines);
+    var folder = Files.createDirectories(directory.resolve(module.replace('.', '/')));
+    for (int index = 0; index < classes; index++) {
+      var sum =
+          index == 0
+              ? requires.stream().map(name -> " + " + name + ".C0.value()")
+              : List.of(" + C" + (index - 1) + ".value()").stream();
+      var source =
+          List.of(
+              "package " + module + ";",
+              "public class C" + index + " {",
+              "  public static int value() {",
+              "    return 1" + sum.collect(Collectors.joining()) + ";",
+              "  }",
+              "}");
+      Files.write(folder.resolve("C" + index + ".java"), source);
+    }
+  }
+
+  /** Return the name of the main module with the given index. */
+  public static String module(int index) {
+    return String.format("com.example.m%04d", index);
+  }
+
+  /** Return the name of the test module with the given index. */
+  public static String test(int index) {
+    return String.format("com.example.t%04d", index);
+  }
+
+  /** Return the path of the module's main sources relative to the source folder. */
+  public static Path path(String layout, String module) {
+    return path(layout, "main", module);
+  }
+
+  /** Return the path of the module's sources in the given realm relative to the source folder. */
+  public static Path path(String layout, String realm, String module) {
+    switch (layout) {
+      case "DEFAULT":
+        return Path.of(module, realm, "java");
+      case "JIGSAW":
+        return Path.of(module);
+    }
+    throw new IllegalArgumentException("Unsupported layout: " + layout);
+  }
+
+  /** Return the main source file of the given module, the one edited by benchmarks. */
+  public static Path source(Path root, String layout, String module) {
+    var directory = root.resolve("src").resolve(path(layout, module));
+    return directory.resolve(module.replace('.', '/')).resolve("C0.java");
+  }
+
+  /** Delete the given directory and all of its contents. */
+  public static void delete(Path root) throws Exception {
+    if (Files.notExists(root)) return;
+    try (var stream = Files.walk(root)) {
+      for (var path : stream.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  /** Shape of a generated project. */
+  public static final class Shape {
+
+    private int modules = 10;
+    private int fanOut = 2;
+    private int fanIn = Integer.MAX_VALUE;
+    private int classes = 1;
+    private int tests = 0;
+    private String layout = "DEFAULT";
+
+    /** Number of main modules. */
+    public Shape setModules(int modules) {
+      this.modules = modules;
+      return this;
+    }
+
+    /** Maximum number of modules a module requires, chosen among its closest predecessors. */
+    public Shape setFanOut(int fanOut) {
+      this.fanOut = fanOut;
+      return this;
+    }
+
+    /** Maximum number of modules requiring a single module. */
+    public Shape setFanIn(int fanIn) {
+      this.fanIn = fanIn;
+      return this;
+    }
+
+    /** Number of classes per module, each class uses its predecessor. */
+    public Shape setClasses(int classes) {
+      this.classes = classes;
+      return this;
+    }
+
+    /** Number of test modules, each requires one main module. */
+    public Shape setTests(int tests) {
+      this.tests = tests;
+      return this;
+    }
+
+    /** Name of the layout, either {@code DEFAULT} or {@code JIGSAW}. */
+    public Shape setLayout(String layout) {
+      this.layout = layout;
+      return this;
+    }
+
+    public String layout() {
+      return layout;
+    }
+
+    public int modules() {
+      return modules;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "{\"modules\":%d,\"fanOut\":%d,\"fanIn\":%d,"
+              + "\"classes\":%d,\"tests\":%d,\"layout\":\"%s\"}",
+          modules, fanOut, fanIn, classes, tests, layout);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AdmissionTests {
+
+  private static Make make(Path temp, Make.Tool.Registry registry) {
+    var logger = new Logger();
+    var folder = Make.Folder.of(temp);
+    var project = Make.Project.Builder.of(logger, folder).build();
+    return new Make(logger, folder, project, Make.Tool.Plan.of("Empty", false), registry);
+  }
+
+  @Test
+  void callsAreAdmittedAsLongAsTheirEstimatesFitIntoTheBudget(@TempDir Path temp)
+      throws Exception {
+    var make = make(temp, Make.Tool.Registry.ofDefaults());
+    var admission = make.new Admission(temp.resolve("memory.history"), 100);
+    admission.acquire(500); // always admitted when no other call is running
+    admission.release(500);
+    admission.acquire(60);
+    var admitted = new AtomicBoolean();
+    var waiting =
+        new Thread(
+            () -> {
+              try {
+                admission.acquire(50);
+                admitted.set(true);
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+              }
+            });
+    waiting.start();
+    admission.acquire(40); // 60 + 40 fits, 60 + 50 doesn't
+    assertEquals(100, admission.reserved());
+    waiting.join(200);
+    assertTrue(waiting.isAlive(), "50 bytes must wait while 100 bytes are reserved");
+    admission.release(60); // 40 + 50 fits
+    waiting.join(TimeUnit.SECONDS.toMillis(10));
+    assertTrue(admitted.get());
+    assertEquals(90, admission.reserved());
+    admission.release(40);
+    admission.release(50);
+    assertEquals(0, admission.reserved());
+  }
+
+  @Test
+  void callsExceedingTheBudgetTogetherRunOneAfterAnother(@TempDir Path temp) throws Exception {
+    var history = Make.Folder.of(temp).out("memory.history");
+    var a = Make.Tool.Call.of("probe", "a");
+    var b = Make.Tool.Call.of("probe", "b");
+    for (var budget : List.of("0", "100")) {
+      Files.createDirectories(history.getParent());
+      Files.write(history, List.of("80 probe [a]", "80 probe [b]"));
+      var probe = new RunTests.Probe();
+      System.setProperty("parallelism", "2");
+      System.setProperty("memory-budget", budget);
+      try {
+        var make = make(temp, Make.Tool.Registry.ofDefaults().register(probe));
+        make.run(Make.Tool.Plan.of("Probes", true, a, b));
+      } finally {
+        System.clearProperty("parallelism");
+        System.clearProperty("memory-budget");
+      }
+      assertEquals(budget.equals("0") ? 2 : 1, probe.maximum.get(), "budget " + budget);
+    }
+    var lines = Files.readAllLines(history);
+    assertTrue(lines.stream().anyMatch(line -> line.matches("\\d+ probe \\[a]")), lines.toString());
+  }
+}
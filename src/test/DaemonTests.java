@@ -0,0 +1,133 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DaemonTests {
+
+  private static Thread serve(Make.Folder folder) throws Exception {
+    var daemon = new Make.Daemon(folder, logger -> Make.Project.Builder.of(logger, folder).build());
+    var thread =
+        new Thread(
+            () -> {
+              try {
+                daemon.serve();
+              } catch (Exception e) {
+                throw new RuntimeException(e);
+              }
+            });
+    thread.start();
+    while (Files.notExists(folder.out("daemon.txt"))) Thread.sleep(10);
+    return thread;
+  }
+
+  private static void stop(Make.Folder folder, Thread thread) throws Exception {
+    assertEquals(OptionalInt.of(0), Make.Daemon.connect(folder, List.of(Make.Daemon.STOP)));
+    thread.join(10_000);
+    assertFalse(thread.isAlive());
+  }
+
+  /** Send the token followed by the given lines, return all lines answered by the daemon. */
+  private static List<String> request(Make.Folder folder, String... lines) throws Exception {
+    var file = Files.readAllLines(folder.out("daemon.txt"));
+    try (var socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(file.get(0)))) {
+      var writer = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+      writer.println(file.get(1));
+      for (var line : lines) writer.println(line);
+      var input = new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8);
+      var answers = new ArrayList<String>();
+      new BufferedReader(input).lines().forEach(answers::add);
+      return answers;
+    }
+  }
+
+  private static Path write(Path file, String content) throws Exception {
+    Files.createDirectories(file.getParent());
+    return Files.writeString(file, content);
+  }
+
+  @Test
+  void connectWithoutRunningDaemonReturnsEmpty(@TempDir Path temp) {
+    var folder = Make.Folder.of(temp);
+    assertEquals(OptionalInt.empty(), Make.Daemon.connect(folder, List.of()));
+  }
+
+  @Test
+  void serveTwoBuildRequestsAndStop(@TempDir Path temp) throws Exception {
+    var folder = Make.Folder.of(temp);
+    var thread = serve(folder);
+    var file = folder.out("daemon.txt");
+    if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      var permissions = PosixFilePermissions.toString(Files.getPosixFilePermissions(file));
+      assertEquals("rw-------", permissions);
+    }
+    var malformed = request(folder, "true", "not a number");
+    assertEquals(List.of(), malformed, "malformed request is dropped");
+
+    assertEquals(OptionalInt.of(0), Make.Daemon.connect(folder, List.of("first")));
+    assertEquals(OptionalInt.of(0), Make.Daemon.connect(folder, List.of("second")));
+    stop(folder, thread);
+    assertFalse(Files.exists(file));
+  }
+
+  @Test
+  void clientVerbosityAndOptionsApplyToItsBuildOnly(@TempDir Path temp) throws Exception {
+    write(temp.resolve("src/a/module-info.java"), "module a {}");
+    var folder = Make.Folder.of(temp);
+    var thread = serve(folder);
+    try {
+      var verbose = request(folder, "true", "1", "dry-run=true", "1", "first");
+      assertEquals("X 0", verbose.get(verbose.size() - 1));
+      var options = "Daemon build (args=[first], options={dry-run=true})";
+      assertTrue(verbose.stream().anyMatch(line -> line.endsWith(options)), verbose.toString());
+      var plan = verbose.stream().filter(line -> line.startsWith("O ") && line.contains("javac"));
+      assertTrue(plan.count() > 0, "plan is sent to the client: " + verbose);
+      assertTrue(Files.notExists(folder.out("classes")), "dry-run");
+      assertNull(System.getProperty("dry-run"));
+
+      var quiet = request(folder, "false", "0", "0");
+      assertEquals("X 0", quiet.get(quiet.size() - 1));
+      assertTrue(quiet.stream().noneMatch(line -> line.matches("[OE] [A-Z] +\\d+ .+")), "" + quiet);
+      assertTrue(Files.exists(folder.out("classes")));
+    } finally {
+      stop(folder, thread);
+    }
+  }
+
+  @Test
+  void sourceFileAddedBetweenRequestsIsCompiled(@TempDir Path temp) throws Exception {
+    write(temp.resolve("src/a/module-info.java"), "module a {}");
+    var deep = temp.resolve("src/a/p/q/r/s/t"); // below the depth of the source index
+    write(deep.resolve("A.java"), "package p.q.r.s.t; class A {}");
+    var folder = Make.Folder.of(temp);
+    var thread = serve(folder);
+    System.setProperty("compile-per-module", "true");
+    try {
+      assertEquals(OptionalInt.of(0), Make.Daemon.connect(folder, List.of("first")));
+      Thread.sleep(10); // let the modification time of the package directory advance
+      write(deep.resolve("B.java"), "package p.q.r.s.t; class B {}");
+      assertEquals(OptionalInt.of(0), Make.Daemon.connect(folder, List.of("second")));
+      try (var stream = Files.walk(folder.out("classes"))) {
+        assertTrue(stream.anyMatch(path -> path.endsWith(Path.of("t", "B.class"))));
+      }
+    } finally {
+      System.clearProperty("compile-per-module");
+      stop(folder, thread);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EventsTests {
+
+  @Test
+  void buildEmitsFlightRecorderEvents(@TempDir Path temp) throws Exception {
+    var file = temp.resolve("build.jfr");
+    try (var recording = new Recording()) {
+      var names = List.of("Run", "ToolCall", "CacheLookup", "LayoutScan", "SummaryWrite");
+      names.forEach(name -> recording.enable("make." + name).withoutThreshold());
+      recording.start();
+      var logger = new Logger();
+      var folder = Make.Folder.of(Path.of("doc", "example", "jigsaw-quick-start"));
+      var project = Make.Project.Builder.of(logger, folder).build();
+      new Make(logger, folder, project, Make.Tool.Plan.of(logger, folder, project)).run();
+      recording.stop();
+      recording.dump(file);
+    }
+    var names =
+        RecordingFile.readAllEvents(file).stream()
+            .map(event -> event.getEventType().getName())
+            .collect(Collectors.toSet());
+    assertTrue(names.contains("make.Run"), names.toString());
+    assertTrue(names.contains("make.ToolCall"), names.toString());
+    assertTrue(names.contains("make.CacheLookup"), names.toString());
+    assertTrue(names.contains("make.LayoutScan"), names.toString());
+    assertTrue(names.contains("make.SummaryWrite"), names.toString());
+  }
+
+  @Test
+  void callsWithoutCacheKeyEmitNoCacheLookup(@TempDir Path temp) throws Exception {
+    var file = temp.resolve("calls.jfr");
+    try (var recording = new Recording()) {
+      recording.enable("make.ToolCall").withoutThreshold();
+      recording.enable("make.CacheLookup").withoutThreshold();
+      recording.start();
+      var logger = new Logger();
+      var folder = Make.Folder.of(temp);
+      var project = Make.Project.Builder.of(logger, folder).build();
+      var make = new Make(logger, folder, project, Make.Tool.Plan.of("Empty", false));
+      make.run(Make.Tool.Call.of("javac", "--version"));
+      recording.stop();
+      recording.dump(file);
+    }
+    var names =
+        RecordingFile.readAllEvents(file).stream()
+            .map(event -> event.getEventType().getName())
+            .collect(Collectors.toSet());
+    assertTrue(names.contains("make.ToolCall"), names.toString());
+    assertFalse(names.contains("make.CacheLookup"), names.toString());
+  }
+}
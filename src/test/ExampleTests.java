@@ -1,6 +1,12 @@
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
@@ -20,4 +26,67 @@ class ExampleTests {
   void buildDefaultMainTest(String example) {
     assertDoesNotThrow(() -> make(example).run());
   }
+
+  @Test
+  void rebuildRestoresOutputsFromCache() throws Exception {
+    var cache = make("jigsaw-quick-start").run().folder().out("cache");
+    var entries = count(cache);
+    assertTrue(entries > 0);
+    make("jigsaw-quick-start").run();
+    assertEquals(entries, count(cache));
+  }
+
+  private static long count(Path directory) throws Exception {
+    try (var stream = Files.list(directory)) {
+      return stream.count();
+    }
+  }
+
+  @Test
+  void failingCallCancelsPendingSiblings() {
+    var make = make("jigsaw-quick-start");
+    var directory = make.folder().out("cancelled");
+    var calls = new ArrayList<Make.Tool.Call>();
+    calls.add(Make.Tool.Call.of("javac", "--unknown-option"));
+    for (int i = 0; i < 9; i++) {
+      calls.add(Make.Tool.Default.CREATE_DIRECTORIES.args(directory.resolve("" + i)));
+    }
+    System.setProperty("parallelism", "1");
+    try {
+      var plan = Make.Tool.Plan.of("Fail fast", true, calls);
+      assertThrows(Error.class, () -> make.run(plan));
+      assertTrue(Files.notExists(directory.resolve("8")));
+    } finally {
+      System.clearProperty("parallelism");
+    }
+  }
+
+  @Test
+  void toolOutputBeyondLimitIsWrittenToLogFile() throws Exception {
+    System.setProperty("tool-output-limit", "0");
+    try {
+      var make = make("jigsaw-quick-start").run(Make.Tool.Call.of("javac", "--version"));
+      var file = make.folder().out("logs", make.id() + "-1-javac-out.log");
+      assertTrue(Files.readString(file).startsWith("javac "));
+    } finally {
+      System.clearProperty("tool-output-limit");
+    }
+  }
+
+  @Test
+  void buildWritesTraceNextToSummary() throws Exception {
+    var trace = make("jigsaw-quick-start").run().folder().out("trace.json");
+    var json = Files.readString(trace);
+    assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+    assertTrue(json.contains("{\"name\":\"javac\",\"cat\":\"call\",\"ph\":\"X\""));
+    assertTrue(json.contains("\"cat\":\"plan\""));
+  }
+
+  @Test
+  void summaryReportsCriticalPath() throws Exception {
+    var summary = make("jigsaw-quick-start").run().folder().out("summary.md");
+    var lines = Files.readAllLines(summary);
+    assertTrue(lines.contains("## Critical Path"));
+    assertTrue(lines.stream().anyMatch(line -> line.startsWith(" - Achievable speed-up: ")));
+  }
 }
@@ -0,0 +1,63 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.spi.ToolProvider;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FingerprintTests {
+
+  private static List<String> fingerprint(Path temp, String api, String hidden) throws Exception {
+    var src = temp.resolve("src");
+    var classes = temp.resolve("classes");
+    Files.createDirectories(src.resolve("a/api"));
+    Files.createDirectories(src.resolve("a/internal"));
+    Files.writeString(src.resolve("a/module-info.java"), "module a { exports a.api; }");
+    Files.writeString(src.resolve("a/api/Api.java"), "package a.api;\npublic class Api {" + api);
+    Files.writeString(src.resolve("a/internal/H.java"), "package a.internal;" + hidden);
+    var javac = ToolProvider.findFirst("javac").orElseThrow();
+    try (var files = Files.walk(src).filter(Files::isRegularFile).map(Path::toString)) {
+      var args = Stream.concat(Stream.of("-d", classes.toString()), files);
+      assertEquals(0, javac.run(System.out, System.err, args.toArray(String[]::new)));
+    }
+    return Make.Fingerprint.of(classes);
+  }
+
+  @Test
+  void headersHaveFingerprintOfClasses(@TempDir Path temp) throws Exception {
+    var api =
+        "private final int i; public Api(int i) { this.i = i; } public Api() { this(1); }"
+            + " public static class Sub extends Api { protected Sub() { super(2); i(); } }"
+            + " public int i() { Runnable r = () -> {}; return i; } }";
+    var expected = fingerprint(temp, api, "");
+    var headers = temp.resolve("headers");
+    Make.Tool.Headers.compile(List.of("-d", headers.toString(), temp.resolve("src/a").toString()));
+    assertEquals(expected, Make.Fingerprint.of(headers));
+  }
+
+  @Test
+  void implementationChangesKeepFingerprint(@TempDir Path temp) throws Exception {
+    var expected = fingerprint(temp.resolve("1"), "public int m() { return 1; } }", "class H {}");
+    var actual =
+        fingerprint(
+            temp.resolve("2"),
+            "public int m() { return 2; } private void p() {} }",
+            "public class H { public void m() {} }");
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  void signatureAndConstantChangesAlterFingerprint(@TempDir Path temp) throws Exception {
+    var expected = fingerprint(temp.resolve("1"), "public static final int C = 1; }", "");
+    var constant = "public static final int C = 2; }";
+    assertNotEquals(expected, fingerprint(temp.resolve("2"), constant, ""));
+    assertNotEquals(
+        expected,
+        fingerprint(
+            temp.resolve("3"), "public static final int C = 1; protected void m() {} }", ""));
+  }
+}
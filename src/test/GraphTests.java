@@ -0,0 +1,50 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class GraphTests {
+
+  private static List<Integer> predecessors(Make.Tool.Graph.Node node) {
+    return node.predecessors().stream()
+        .map(Make.Tool.Graph.Node::index)
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  void sequentialCallsWithoutDeclaredPathsAreOrdered() {
+    var plan = Make.Tool.Plan.of("plan", false, Make.Tool.Call.of("a"), Make.Tool.Call.of("b"));
+    var nodes = Make.Tool.Graph.of(plan).nodes();
+    assertEquals(2, nodes.size());
+    assertEquals(List.of(), predecessors(nodes.get(0)));
+    assertEquals(List.of(0), predecessors(nodes.get(1)));
+  }
+
+  @Test
+  void parallelCallsAreIndependent() {
+    var plan = Make.Tool.Plan.of("plan", true, Make.Tool.Call.of("a"), Make.Tool.Call.of("b"));
+    var nodes = Make.Tool.Graph.of(plan).nodes();
+    assertEquals(List.of(), predecessors(nodes.get(0)));
+    assertEquals(List.of(), predecessors(nodes.get(1)));
+  }
+
+  @Test
+  void sequentialCallsAreOrderedByDeclaredPaths() {
+    var compile = Make.Tool.Call.newCall("compile").output(Path.of("out/classes")).build();
+    var jar =
+        Make.Tool.Call.newCall("jar")
+            .input(Path.of("out/classes/foo"))
+            .output(Path.of("out/foo.jar"))
+            .build();
+    var doc = Make.Tool.Call.newCall("doc").input(Path.of("src")).output(Path.of("doc")).build();
+    var plan =
+        Make.Tool.Plan.of("plan", false, compile, Make.Tool.Plan.of("more", false, jar, doc));
+    var nodes = Make.Tool.Graph.of(plan).nodes();
+    assertEquals(3, nodes.size());
+    assertEquals(List.of(0), predecessors(nodes.get(1)));
+    assertEquals(List.of(), predecessors(nodes.get(2)));
+    assertEquals(nodes.get(1), nodes.get(0).successors().get(0));
+  }
+}
@@ -0,0 +1,113 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JarTests {
+
+  @Test
+  void writeSortedEntriesWithManifestFirst(@TempDir Path temp) throws Exception {
+    var content = Files.createDirectories(temp.resolve("content"));
+    Files.createDirectories(content.resolve("b"));
+    Files.writeString(content.resolve("b/B.txt"), "B".repeat(99));
+    Files.writeString(content.resolve("a.txt"), "a");
+    var file = temp.resolve("a.jar");
+    var jars = Make.Tool.Jar.parse(List.of("--file", file.toString(), "-C", content.toString()));
+    assertEquals(5, jars.get(0).write(new HashMap<>()));
+    try (var jar = new JarFile(file.toFile())) {
+      var names = jar.stream().map(entry -> entry.getName()).collect(Collectors.toList());
+      assertEquals(List.of("META-INF/", "META-INF/MANIFEST.MF", "a.txt", "b/", "b/B.txt"), names);
+      assertEquals("1.0", jar.getManifest().getMainAttributes().getValue("Manifest-Version"));
+      var bytes = jar.getInputStream(jar.getEntry("b/B.txt")).readAllBytes();
+      assertEquals("B".repeat(99), new String(bytes));
+    }
+  }
+
+  @Test
+  void writeJarsSharingDirectoryListings(@TempDir Path temp) throws Exception {
+    var content = Files.createDirectories(temp.resolve("content"));
+    Files.writeString(content.resolve("a.txt"), "a");
+    var listings = new HashMap<Path, List<Path>>();
+    var arguments =
+        List.of(
+            "--file", temp.resolve("1.jar").toString(), "-C", content.toString(),
+            "--file", temp.resolve("2.jar").toString(), "--no-manifest", "-C", content.toString());
+    var jars = Make.Tool.Jar.parse(arguments);
+    assertEquals(2, jars.size());
+    assertEquals(3, jars.get(0).write(listings));
+    assertEquals(1, jars.get(1).write(listings));
+    assertEquals(1, listings.size());
+  }
+
+  @Test
+  void rewriteCopiesUnchangedEntriesAndIsReproducible(@TempDir Path temp) throws Exception {
+    var content = Files.createDirectories(temp.resolve("content"));
+    Files.writeString(content.resolve("a.txt"), "a".repeat(99));
+    Files.writeString(content.resolve("b.txt"), "b".repeat(99));
+    var file = temp.resolve("a.jar");
+    var index = temp.resolve("index").resolve("a.jar.index");
+    var arguments =
+        List.of("--file", file.toString(), "--index", index.toString(), "-C", content.toString());
+    var jar = Make.Tool.Jar.parse(arguments).get(0);
+    assertEquals(4, jar.write(new HashMap<>()));
+    assertEquals(0, jar.copied());
+    var bytes = Files.readAllBytes(file);
+
+    assertEquals(4, jar.write(new HashMap<>()));
+    assertEquals(2, jar.copied());
+    assertArrayEquals(bytes, Files.readAllBytes(file));
+
+    Files.writeString(content.resolve("b.txt"), "B".repeat(99));
+    assertEquals(4, jar.write(new HashMap<>()));
+    assertEquals(1, jar.copied());
+    try (var zip = new JarFile(file.toFile())) {
+      var a = zip.getInputStream(zip.getEntry("a.txt")).readAllBytes();
+      var b = zip.getInputStream(zip.getEntry("b.txt")).readAllBytes();
+      assertEquals("a".repeat(99), new String(a));
+      assertEquals("B".repeat(99), new String(b));
+    }
+  }
+
+  @Test
+  void writeZip64RecordsForMoreThan65535Entries(@TempDir Path temp) throws Exception {
+    var content = Files.createDirectories(temp.resolve("content"));
+    for (int i = 0; i < 0x10000; i++) Files.createFile(content.resolve(i + ".txt"));
+    var file = temp.resolve("a.jar");
+    var jars = Make.Tool.Jar.parse(List.of("--file", file.toString(), "-C", content.toString()));
+    assertEquals(0x10002, jars.get(0).write(new HashMap<>()));
+    try (var jar = new JarFile(file.toFile())) {
+      assertEquals(0x10002, jar.size());
+      assertEquals(0, jar.getInputStream(jar.getEntry("65535.txt")).readAllBytes().length);
+    }
+  }
+
+  @Test
+  void failedWriteRemovesTemporaryFile(@TempDir Path temp) throws Exception {
+    var content = Files.createDirectories(temp.resolve("content"));
+    var listing = new ArrayList<Path>();
+    for (int i = 0; i < 99; i++) {
+      listing.add(Files.writeString(content.resolve(i + ".txt"), "" + i));
+    }
+    listing.add(50, content.resolve("missing.txt"));
+    var file = temp.resolve("a.jar");
+    var jar = Make.Tool.Jar.parse(List.of("--file", file.toString(), "-C", content.toString()));
+    var listings = new HashMap<Path, List<Path>>(Map.of(content, listing));
+    assertThrows(Exception.class, () -> jar.get(0).write(listings));
+    assertFalse(Files.exists(file));
+    assertFalse(Files.exists(temp.resolve("a.jar.tmp")));
+
+    Thread.currentThread().interrupt();
+    listing.remove(50);
+    assertThrows(InterruptedException.class, () -> jar.get(0).write(listings));
+    assertFalse(Thread.interrupted());
+    assertFalse(Files.exists(temp.resolve("a.jar.tmp")));
+  }
+}
@@ -19,6 +19,11 @@ public class Logger implements Make.Logger {
     return verbose;
   }
 
+  @Override
+  public boolean isLoggable(System.Logger.Level level) {
+    return verbose;
+  }
+
   @Override
   public Make.Logger log(Entry entry) {
     if (verbose) System.out.println(entry.toString(start));
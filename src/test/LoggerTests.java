@@ -1,5 +1,7 @@
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.lang.System.Logger.Level;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Test;
 
 class LoggerTests {
@@ -7,4 +9,28 @@ class LoggerTests {
   void simpleNameIsSystemLogger() {
     assertEquals("SystemLogger", Make.Logger.ofSystem().getClass().getSimpleName());
   }
+
+  @Test
+  void systemLoggerDiscardsDebugEntriesUnlessVerbose() {
+    assertFalse(Make.Logger.ofSystem(false).isLoggable(Level.DEBUG));
+    assertTrue(Make.Logger.ofSystem(false).isLoggable(Level.INFO));
+    assertTrue(Make.Logger.ofSystem(true).isLoggable(Level.TRACE));
+  }
+
+  @Test
+  void entryFormatsItsMessageOnceOnFirstAccess() {
+    var counter = new AtomicInteger();
+    var argument =
+        new Object() {
+          @Override
+          public String toString() {
+            return "#" + counter.incrementAndGet();
+          }
+        };
+    var entry = Make.Logger.Entry.of(Level.INFO, "message %s", argument);
+    assertEquals(0, counter.get());
+    assertEquals("message #1", entry.message());
+    assertEquals("message #1", entry.message());
+    assertEquals(1, counter.get());
+  }
 }
@@ -0,0 +1,93 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.module.ModuleDescriptor;
+import java.lang.module.ModuleDescriptor.Requires.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ParserTests {
+
+  @Test
+  void parseMinimalDeclaration() {
+    var descriptor = Make.Project.Parser.parse("module foo {}");
+    assertEquals("foo", descriptor.name());
+    assertEquals(Set.of("java.base"), requires(descriptor));
+  }
+
+  @Test
+  void parseFullDeclaration() {
+    var source =
+        String.join(
+            "\n",
+            "/* header */",
+            "import foo.spi.Service;",
+            "import static java.util.Objects.requireNonNull;",
+            "",
+            "@Deprecated(since = \"1(\", forRemoval = false) // comment",
+            "open module foo.bar {",
+            "  requires transitive java.logging;",
+            "  requires static java.sql;",
+            "  requires foo.base; // comment",
+            "  exports foo.api;",
+            "  exports foo.internal to foo.test, foo.tool;",
+            "  uses Service;",
+            "  provides Service with foo.impl.ServiceImpl, foo.impl.Other;",
+            "}");
+    var descriptor = Make.Project.Parser.parse(source);
+    assertEquals("foo.bar", descriptor.name());
+    assertTrue(descriptor.isOpen());
+    assertEquals(Set.of("java.base", "java.logging", "java.sql", "foo.base"), requires(descriptor));
+    for (var requires : descriptor.requires()) {
+      if (requires.name().equals("java.logging"))
+        assertEquals(Set.of(Modifier.TRANSITIVE), requires.modifiers());
+      if (requires.name().equals("java.sql"))
+        assertEquals(Set.of(Modifier.STATIC), requires.modifiers());
+    }
+    var exports =
+        descriptor.exports().stream()
+            .map(exported -> exported.source() + new TreeSet<>(exported.targets()))
+            .sorted()
+            .collect(Collectors.toList());
+    assertEquals(List.of("foo.api[]", "foo.internal[foo.test, foo.tool]"), exports);
+    assertEquals(Set.of("foo.spi.Service"), descriptor.uses());
+    var provides = descriptor.provides().iterator().next();
+    assertEquals("foo.spi.Service", provides.service());
+    assertEquals(List.of("foo.impl.ServiceImpl", "foo.impl.Other"), provides.providers());
+  }
+
+  @Test
+  void parseErrorReportsLine() {
+    var error =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> Make.Project.Parser.parse("module foo {\n  require bar;\n}"));
+    assertEquals("line 2: unexpected directive 'require'", error.getMessage());
+  }
+
+  @Test
+  void describeCachesDescriptorOfUnmodifiedFile(@TempDir Path temp) throws Exception {
+    var file = Files.writeString(temp.resolve("module-info.java"), "module foo {}");
+    var first = Make.Project.Parser.describe(file);
+    assertSame(first, Make.Project.Parser.describe(file));
+    Files.writeString(file, "module foo { requires java.sql; }");
+    var second = Make.Project.Parser.describe(file);
+    assertNotSame(first, second);
+    assertEquals(Set.of("java.base", "java.sql"), requires(second));
+  }
+
+  private static Set<String> requires(ModuleDescriptor descriptor) {
+    return descriptor.requires().stream()
+        .map(ModuleDescriptor.Requires::name)
+        .collect(Collectors.toSet());
+  }
+}
@@ -0,0 +1,129 @@
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.module.ModuleDescriptor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PlannerTests {
+
+  private static Make.Planner planner(Make.Project.Realm realm) {
+    var logger = new Logger();
+    var folder = Make.Folder.of(Path.of("build"));
+    var project = new Make.Project.Builder().setRealms(List.of(realm)).build();
+    return new Make.Planner(logger, folder, project);
+  }
+
+  private static Make.Project.Realm realm(ModuleDescriptor... descriptors) {
+    var modules = new ArrayList<String>();
+    for (var descriptor : descriptors) modules.add(descriptor.name());
+    return new Make.Project.Realm.Builder("main")
+        .setModules(modules)
+        .setDescriptors(List.of(descriptors))
+        .build();
+  }
+
+  @Test
+  void wavesFollowRequiresDirectives() {
+    var realm =
+        realm(
+            ModuleDescriptor.newModule("c").requires("b").requires("java.sql").build(),
+            ModuleDescriptor.newModule("b").requires("a").build(),
+            ModuleDescriptor.newModule("a").build(),
+            ModuleDescriptor.newModule("d").build());
+    var planner = planner(realm);
+    assertEquals(List.of(List.of("a", "d"), List.of("b"), List.of("c")), planner.waves(realm));
+    assertEquals(Set.of("a", "b"), planner.closure(realm, "c"));
+  }
+
+  @Test
+  void cyclicModulesAreRejected() {
+    var realm =
+        realm(
+            ModuleDescriptor.newModule("a").requires("b").build(),
+            ModuleDescriptor.newModule("b").requires("a").build());
+    assertThrows(IllegalStateException.class, () -> planner(realm).waves(realm));
+  }
+
+  @Test
+  void javacOfSingleModuleUsesClassesOfRequiredModules() {
+    var realm =
+        realm(
+            ModuleDescriptor.newModule("a").build(),
+            ModuleDescriptor.newModule("b").requires("a").build());
+    var call = planner(realm).javac(realm, "b");
+    var classes = Path.of("build", ".make-java", "classes", "main");
+    assertEquals("javac", call.name());
+    var modulePath = List.of("--module-path", classes.resolve("a").toString());
+    assertEquals(modulePath, call.args().subList(0, 2));
+    assertFalse(call.args().contains("--module-source-path"));
+    assertEquals(Set.of(classes.resolve("b")), call.outputs());
+    assertTrue(call.inputs().contains(classes.resolve("a")));
+    assertEquals(Set.of(classes.resolve("a")), call.apis());
+  }
+
+  @Test
+  void javacOfSingleModuleReadsClassesAndNotSourcesOfRequiredModules(@TempDir Path temp)
+      throws Exception {
+    write(temp.resolve("src/a/module-info.java"), "module a { exports a; }");
+    write(temp.resolve("src/a/a/A.java"), "package a; public class A { static void foo() {} }");
+    write(temp.resolve("src/b/module-info.java"), "module b { requires a; }");
+    write(temp.resolve("src/b/b/B.java"), "package b; class B { { a.A.bar(); } }");
+    var logger = new Logger();
+    var folder = Make.Folder.of(temp);
+    var project = Make.Project.Builder.of(logger, folder).build();
+    var realm = project.realms().get(0);
+    var planner = new Make.Planner(logger, folder, project);
+    var make = new Make(logger, folder, project, Make.Tool.Plan.of("Empty", false));
+    // compiled classes of "a" differ from its sources: only they provide the called method
+    var classes = planner.javac(realm, "a").outputs().iterator().next();
+    var info = write(temp.resolve("other/module-info.java"), "module a { exports a; }");
+    var type = write(temp.resolve("other/a/A.java"), "package a; public class A { " + BAR + " }");
+    var other = Make.Tool.Call.newCall("javac").add("-d", classes).add(info).add(type).build();
+    make.run(other);
+    assertDoesNotThrow(() -> make.run(planner.javac(realm, "b")));
+  }
+
+  private static final String BAR = "public static void bar() {}";
+
+  private static Path write(Path file, String content) throws Exception {
+    Files.createDirectories(file.getParent());
+    return Files.writeString(file, content);
+  }
+
+  @Test
+  void headersPlanCompilesModulesAgainstHeadersOfRequiredModules() {
+    var realm =
+        realm(
+            ModuleDescriptor.newModule("a").build(),
+            ModuleDescriptor.newModule("b").requires("a").build());
+    var planner = planner(realm);
+    var plan = planner.headers(realm, planner.waves(realm));
+    var headers = Path.of("build", ".make-java", "headers", "main");
+    var nodes = Make.Tool.Graph.of(plan).nodes();
+    assertEquals(4, nodes.size());
+    assertEquals("COMPILE_HEADERS", nodes.get(0).call().name());
+    assertEquals(Set.of(headers.resolve("a")), nodes.get(0).call().outputs());
+    assertEquals(Set.of(headers.resolve("a")), nodes.get(1).call().apis());
+    var javac = nodes.get(3).call();
+    assertEquals("javac", javac.name());
+    assertEquals(Set.of(headers.resolve("a")), javac.apis());
+    assertEquals(List.of(nodes.get(0)), nodes.get(3).predecessors());
+  }
+
+  @Test
+  void headersAreStoredByRealmNameEvenIfRealmPathIsCurrentDirectory() {
+    var realm = new Make.Project.Realm.Builder("default").setPath(Path.of(".")).build();
+    var planner = planner(realm);
+    var headers = Path.of("build", ".make-java", "headers", "default", "a");
+    assertEquals(Set.of(headers), planner.header(realm, "a").outputs());
+  }
+}
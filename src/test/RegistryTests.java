@@ -0,0 +1,66 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.spi.ToolProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RegistryTests {
+
+  private static Make make(Path temp, Make.Tool.Registry registry) {
+    var logger = new Logger();
+    var folder = Make.Folder.of(temp);
+    var project = Make.Project.Builder.of(logger, folder).build();
+    return new Make(logger, folder, project, Make.Tool.Plan.of("Empty", false), registry);
+  }
+
+  @Test
+  void lookupResolvesEachNameOnce() {
+    var registry = Make.Tool.Registry.ofDefaults();
+    var javac = registry.lookup("javac");
+    assertTrue(javac.provider().isPresent());
+    assertSame(javac, registry.lookup("javac"));
+    assertTrue(registry.lookup("JAR").isBuiltIn());
+    assertTrue(registry.lookup("unknown").provider().isEmpty());
+    assertEquals(List.of(javac, registry.lookup("unknown")), registry.resolved());
+  }
+
+  @Test
+  void registeredToolProviderIsCalled(@TempDir Path temp) {
+    var registry =
+        Make.Tool.Registry.ofDefaults()
+            .register(
+                new ToolProvider() {
+                  @Override
+                  public String name() {
+                    return "fail";
+                  }
+
+                  @Override
+                  public int run(PrintWriter out, PrintWriter err, String... args) {
+                    return 42;
+                  }
+                });
+    var make = make(temp, registry);
+    var error = assertThrows(Error.class, () -> make.run(Make.Tool.Call.of("fail")));
+    assertTrue(error.getMessage().contains("42"), error.getMessage());
+    assertTrue(registry.resolved().isEmpty());
+  }
+
+  @Test
+  void unknownToolFailsAndLookupIsTraced(@TempDir Path temp) throws Exception {
+    var make = make(temp, Make.Tool.Registry.ofDefaults());
+    assertThrows(Error.class, () -> make.run(Make.Tool.Call.of("unknown")));
+    var summary = make.folder().out("summary.md");
+    Files.createDirectories(summary.getParent());
+    make.run(Make.Tool.Default.WRITE_SUMMARY.args(summary));
+    var trace = Files.readString(make.folder().out("trace.json"));
+    assertTrue(trace.contains("{\"name\":\"lookup unknown\",\"cat\":\"lookup\""), trace);
+  }
+}
@@ -0,0 +1,117 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.spi.ToolProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RunTests {
+
+  /** Tool provider recording its threads and the maximum number of concurrently running calls. */
+  static class Probe implements ToolProvider {
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maximum = new AtomicInteger();
+    final List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public String name() {
+      return "probe";
+    }
+
+    @Override
+    public int run(PrintWriter out, PrintWriter err, String... args) {
+      threads.add(Thread.currentThread());
+      maximum.accumulateAndGet(running.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(200);
+        return 0;
+      } catch (InterruptedException e) {
+        return 1;
+      } finally {
+        running.decrementAndGet();
+      }
+    }
+  }
+
+  private static Make make(Path temp, Make.Tool.Registry registry) {
+    var logger = new Logger();
+    var folder = Make.Folder.of(temp);
+    var project = Make.Project.Builder.of(logger, folder).build();
+    return new Make(logger, folder, project, Make.Tool.Plan.of("Empty", false), registry);
+  }
+
+  private static Make.Tool.Plan probes(int count) {
+    var calls = new ArrayList<Make.Tool.Call>();
+    for (int i = 0; i < count; i++) calls.add(Make.Tool.Call.of("probe", "" + i));
+    return Make.Tool.Plan.of("Probes", true, calls);
+  }
+
+  @Test
+  void callsRunWithConfiguredParallelism(@TempDir Path temp) {
+    for (int parallelism : new int[] {1, 3}) {
+      var probe = new Probe();
+      System.setProperty("parallelism", "" + parallelism);
+      try {
+        make(temp, Make.Tool.Registry.ofDefaults().register(probe)).run(probes(6));
+      } finally {
+        System.clearProperty("parallelism");
+      }
+      assertEquals(parallelism, probe.maximum.get());
+      assertTrue(probe.threads.stream().allMatch(ForkJoinWorkerThread.class::isInstance));
+    }
+  }
+
+  @Test
+  void parallelismMustBeGreaterThanZero(@TempDir Path temp) {
+    var make = make(temp, Make.Tool.Registry.ofDefaults());
+    System.setProperty("parallelism", "0");
+    try {
+      var exception = assertThrows(IllegalArgumentException.class, () -> make.run(probes(1)));
+      assertTrue(exception.getMessage().contains("parallelism"), exception.getMessage());
+    } finally {
+      System.clearProperty("parallelism");
+    }
+  }
+
+  @Test
+  void builtInToolsRunOnVirtualThreadsIfSupported(@TempDir Path temp) throws Exception {
+    var probe = new Probe();
+    var threads = Collections.synchronizedList(new ArrayList<Thread>());
+    var registry =
+        Make.Tool.Registry.ofDefaults()
+            .register(probe)
+            .register(
+                "BUILT_IN",
+                (make, arguments) -> {
+                  threads.add(Thread.currentThread());
+                  return make;
+                });
+    var plan = Make.Tool.Plan.of("Mixed", true, Make.Tool.Call.of("BUILT_IN"), probes(1));
+    System.setProperty("parallelism", "1");
+    System.setProperty("virtual-threads", "true");
+    try {
+      make(temp, registry).run(plan);
+    } finally {
+      System.clearProperty("parallelism");
+      System.clearProperty("virtual-threads");
+    }
+    assertEquals(1, threads.size());
+    var methods = Arrays.stream(Thread.class.getMethods());
+    var supported = methods.anyMatch(method -> method.getName().equals("isVirtual"));
+    if (supported) {
+      assertEquals(true, Thread.class.getMethod("isVirtual").invoke(threads.get(0)));
+    } else {
+      assertTrue(threads.get(0) instanceof ForkJoinWorkerThread, threads.toString());
+    }
+    assertTrue(probe.threads.get(0) instanceof ForkJoinWorkerThread, probe.threads.toString());
+  }
+}
@@ -0,0 +1,77 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SourceIndexTests {
+
+  @Test
+  void indexOfDocExampleDefaultMainTest() {
+    var index = Make.Project.SourceIndex.of(Path.of("doc/example/default-main-test/src"));
+    var declarations = index.declarations().stream().sorted().collect(Collectors.toList());
+    assertEquals(
+        List.of(
+            Path.of("org.foo.bar/main/java/module-info.java"),
+            Path.of("org.foo/main/java/module-info.java"),
+            Path.of("test.base/test/java/module-info.java")),
+        declarations);
+    assertTrue(index.isDirectory(Path.of("org.foo/main/java")));
+    assertFalse(index.isDirectory(Path.of("org.foo/main/resources")));
+    assertFalse(index.isDirectory(Path.of("org.foo/main/java/module-info.java")));
+  }
+
+  @Test
+  void indexOfMissingDirectoryIsEmpty() {
+    var index = Make.Project.SourceIndex.of(Path.of("does-not-exist"));
+    assertEquals(List.of(), index.declarations());
+  }
+
+  @Test
+  void persistedIndexOfMissingDirectoryIsNotCurrent(@TempDir Path temp) throws Exception {
+    var root = temp.resolve("src");
+    var file = temp.resolve("index.txt");
+    var missing = Make.Project.SourceIndex.of(root, file);
+    assertTrue(Files.exists(file));
+    assertFalse(missing.isCurrent());
+
+    Files.createDirectories(root.resolve("a"));
+    Files.writeString(root.resolve("a/module-info.java"), "module a {}");
+    var created = Make.Project.SourceIndex.of(root, file);
+    assertEquals(List.of(Path.of("a/module-info.java")), created.declarations());
+    assertTrue(created.isCurrent());
+  }
+
+  @Test
+  void persistedIndexIsRevalidatedByDirectoryModificationTimes(@TempDir Path temp)
+      throws Exception {
+    var root = Files.createDirectories(temp.resolve("src"));
+    var file = temp.resolve("index.txt");
+    Files.createDirectories(root.resolve("a"));
+    Files.writeString(root.resolve("a/module-info.java"), "module a {}");
+    var time = FileTime.fromMillis(1_000_000);
+    Files.setLastModifiedTime(root, time);
+
+    var first = Make.Project.SourceIndex.of(root, file);
+    assertTrue(Files.exists(file));
+    assertEquals(List.of(Path.of("a/module-info.java")), first.declarations());
+
+    Files.createDirectories(root.resolve("b"));
+    Files.writeString(root.resolve("b/module-info.java"), "module b {}");
+    Files.setLastModifiedTime(root, time);
+    var stale = Make.Project.SourceIndex.of(root, file);
+    assertEquals(List.of(Path.of("a/module-info.java")), stale.declarations(), "not revalidated");
+
+    Files.setLastModifiedTime(root, FileTime.fromMillis(2_000_000));
+    var fresh = Make.Project.SourceIndex.of(root, file);
+    var declarations = fresh.declarations().stream().sorted().collect(Collectors.toList());
+    var expected = List.of(Path.of("a/module-info.java"), Path.of("b/module-info.java"));
+    assertEquals(expected, declarations);
+  }
+}
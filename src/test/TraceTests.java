@@ -0,0 +1,94 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.spi.ToolProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TraceTests {
+
+  private static Make make(Path temp) {
+    var registry =
+        Make.Tool.Registry.ofDefaults()
+            .register(
+                new ToolProvider() {
+                  @Override
+                  public String name() {
+                    return "sleep";
+                  }
+
+                  @Override
+                  public int run(PrintWriter out, PrintWriter err, String... args) {
+                    try {
+                      Thread.sleep(Long.parseLong(args[0]));
+                      return 0;
+                    } catch (InterruptedException e) {
+                      return 1;
+                    }
+                  }
+                });
+    var logger = new Logger();
+    var folder = Make.Folder.of(temp);
+    var project = Make.Project.Builder.of(logger, folder).build();
+    return new Make(logger, folder, project, Make.Tool.Plan.of("Empty", false), registry);
+  }
+
+  private static long tid(String json, String plan) {
+    var event = "{\"name\":\"" + plan + "\",\"cat\":\"plan\",\"ph\":\"X\",\"pid\":1,\"tid\":";
+    var matcher = Pattern.compile(Pattern.quote(event) + "(-?\\d+)").matcher(json);
+    assertTrue(matcher.find(), plan + " not found in " + json);
+    return Long.parseLong(matcher.group(1));
+  }
+
+  @Test
+  void overlappingSiblingPlansAreShownOnSeparateTracks(@TempDir Path temp) throws Exception {
+    System.setProperty("parallelism", "2");
+    try {
+      var make = make(temp);
+      var sleep = Make.Tool.Call.of("sleep", "500");
+      var a = Make.Tool.Plan.of("a", false, Make.Tool.Plan.of("a1", false, sleep));
+      var b = Make.Tool.Plan.of("b", false, Make.Tool.Call.of("sleep", "500"));
+      make.run(Make.Tool.Plan.of("root", true, a, b));
+      var summary = Files.createDirectories(make.folder().out()).resolve("summary.md");
+      make.run(Make.Tool.Default.WRITE_SUMMARY.args(summary));
+      var json = Files.readString(make.folder().out("trace.json"));
+      assertEquals(0, tid(json, "root"));
+      assertNotEquals(tid(json, "a"), tid(json, "b"));
+      assertEquals(tid(json, "a"), tid(json, "a1"));
+      assertTrue(json.contains("\"args\":{\"name\":\"Plans 2\"}"), json);
+    } finally {
+      System.clearProperty("parallelism");
+    }
+  }
+
+  @Test
+  void criticalPathFollowsLongestChainOfDependentCalls(@TempDir Path temp) {
+    var a = Make.Tool.Call.of("a");
+    var b = Make.Tool.Call.of("b");
+    var c = Make.Tool.Call.of("c");
+    var d = Make.Tool.Call.of("d");
+    var plan = Make.Tool.Plan.of("plan", false, a, Make.Tool.Plan.of("bc", true, b, c), d);
+    var nodes = Make.Tool.Graph.of(plan).nodes();
+    assertEquals(List.of(nodes.get(0)), nodes.get(1).predecessors());
+    assertEquals(nodes.subList(0, 3), nodes.get(3).predecessors());
+
+    var trace = make(temp).new Trace();
+    var spanA = new Make.Span(nodes.get(0), 1, "main", 0, 10, "done");
+    var spanC = new Make.Span(nodes.get(2), 2, "main", 10, 30, "done");
+    var spanB = new Make.Span(nodes.get(1), 1, "main", 10, 60, "done");
+    var spanD = new Make.Span(nodes.get(3), 1, "main", 60, 65, "done");
+    List.of(spanA, spanC, spanB, spanD).forEach(trace::record); // in order of completion
+
+    var path = trace.criticalPath();
+    assertEquals(List.of(spanA, spanB, spanD), path);
+    var durations = path.stream().map(Make.Span::duration).collect(Collectors.toList());
+    assertEquals(List.of(10L, 50L, 5L), durations);
+  }
+}
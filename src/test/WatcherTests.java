@@ -0,0 +1,61 @@
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WatcherTests {
+
+  @Test
+  void changeOfSourceFileRebuildsAffectedCalls(@TempDir Path temp) throws Exception {
+    var example = Path.of("doc", "example", "jigsaw-quick-start", "src");
+    try (var stream = Files.walk(example)) {
+      for (var path : (Iterable<Path>) stream::iterator) {
+        Files.copy(path, temp.resolve("src").resolve(example.relativize(path).toString()));
+      }
+    }
+    var messages = new LinkedBlockingQueue<String>();
+    var logger =
+        new Make.Logger() {
+          @Override
+          public Make.Logger log(Entry entry) {
+            messages.add(entry.message());
+            return this;
+          }
+        };
+    var folder = Make.Folder.of(temp);
+    var watcher =
+        new Make.Watcher(logger, folder, it -> Make.Project.Builder.of(it, folder).build());
+    var thread =
+        new Thread(
+            () -> {
+              try {
+                watcher.watch();
+              } catch (Exception e) {
+                throw new RuntimeException(e);
+              }
+            });
+    thread.start();
+    try {
+      await(messages, "Watching ");
+      Files.writeString(temp.resolve("src/org.astro/README.txt"), "changed");
+      var message = await(messages, "Rebuilding ");
+      assertTrue(message.endsWith("in [default/org.astro]"), message);
+    } finally {
+      thread.interrupt();
+      thread.join(10_000);
+    }
+  }
+
+  private static String await(BlockingQueue<String> messages, String prefix) throws Exception {
+    while (true) {
+      var message = messages.poll(30, TimeUnit.SECONDS);
+      if (message == null) throw new AssertionError("Expected message: " + prefix + "...");
+      if (message.startsWith(prefix)) return message;
+    }
+  }
+}
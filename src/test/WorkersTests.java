@@ -0,0 +1,79 @@
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WorkersTests {
+
+  private static final Make.Tool.Call VERSION = Make.Tool.Call.of("javac", "--version");
+
+  private static Make make(Path temp) {
+    var logger = new Logger();
+    var folder = Make.Folder.of(temp);
+    var project = Make.Project.Builder.of(logger, folder).build();
+    Make.WORKERS.stop();
+    System.setProperty("workers", "1");
+    return new Make(logger, folder, project, Make.Tool.Plan.of("Empty", false));
+  }
+
+  private static void reset() {
+    System.clearProperty("workers");
+    System.clearProperty("worker-memory-limit");
+    System.clearProperty("worker-jvm-options");
+    Make.WORKERS.stop();
+  }
+
+  @Test
+  void workerIsReusedUntilItsHeapExceedsTheLimit(@TempDir Path temp) {
+    try {
+      var make = make(temp);
+      var started = Make.WORKERS.started();
+      System.setProperty("worker-memory-limit", "1073741824");
+      make.run(VERSION);
+      make.run(VERSION);
+      assertEquals(started + 1, Make.WORKERS.started(), "reused");
+
+      System.setProperty("worker-memory-limit", "0");
+      make.run(VERSION); // runs on the idle worker and recycles it
+      make.run(VERSION);
+      assertEquals(started + 2, Make.WORKERS.started(), "recycled");
+    } finally {
+      reset();
+    }
+  }
+
+  @Test
+  void argumentsWithLineBreaksKeepTheProtocolInSync(@TempDir Path temp) {
+    assertEquals("a\\nb\\\\n\\r", Make.Worker.escape("a\nb\\n\r"));
+    assertEquals("a\nb\\n\r", Make.Worker.unescape(Make.Worker.escape("a\nb\\n\r")));
+    try {
+      var make = make(temp);
+      var started = Make.WORKERS.started();
+      var bad = Make.Tool.Call.of("javac", "--bad\nline");
+      var error = assertThrows(Error.class, () -> make.run(bad));
+      assertTrue(error.getCause().getMessage().contains("--bad"), error.getCause().getMessage());
+      assertDoesNotThrow(() -> make.run(VERSION));
+      assertEquals(started + 1, Make.WORKERS.started());
+    } finally {
+      reset();
+    }
+  }
+
+  @Test
+  void workerJvmOptionsArePassedToWorkers(@TempDir Path temp) {
+    try {
+      var make = make(temp);
+      System.setProperty("worker-jvm-options", " -Xmx64m  -Xss1m ");
+      assertDoesNotThrow(() -> make.run(VERSION));
+      Make.WORKERS.stop();
+      System.setProperty("worker-jvm-options", "-Xunknown-option");
+      assertThrows(Error.class, () -> make.run(VERSION));
+    } finally {
+      reset();
+    }
+  }
+}